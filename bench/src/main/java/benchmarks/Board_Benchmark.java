@@ -0,0 +1,204 @@
+package benchmarks;
+
+import game.Board;
+import game.Cell_Status;
+import game.Coordinate_Pair;
+import game.Move;
+import game.Move_List;
+import game.RectangularGrid;
+
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import players.Player_ID;
+
+/**
+ * Board hot paths. Every benchmark runs once over each position of the phase, so the
+ * scores are per corpus, not per board.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Board_Benchmark {
+	private static Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, Player_ID.PLAYER_3, Player_ID.PLAYER_4};
+
+	@Param({Positions.OPENING, Positions.MIDGAME, Positions.ENDGAME})
+	public String phase;
+
+	private Board[] boards;
+	private Player_ID[] to_move;
+	// the first pawn move and the first wall move of the player to move, -1 if none
+	private int[] pawn_moves;
+	private int[] wall_moves;
+	private RectangularGrid<Cell_Status>[] grids;
+	private Move_List move_list;
+	private int[] distances;
+	// every move of the player to move
+	private Move_List[] all_moves;
+
+	@SuppressWarnings("unchecked")
+	@Setup(Level.Trial)
+	public void setup(){
+		Vector<Board> corpus = Positions.load(phase);
+		boards = corpus.toArray(new Board[corpus.size()]);
+		to_move = new Player_ID[boards.length];
+		pawn_moves = new int[boards.length];
+		wall_moves = new int[boards.length];
+		grids = new RectangularGrid[boards.length];
+		move_list = new Move_List();
+		all_moves = new Move_List[boards.length];
+		for(int i = 0; i < boards.length; i++){
+			to_move[i] = boards[i].get_player_to_move();
+			all_moves[i] = new Move_List();
+			boards[i].get_possible_moves(to_move[i], all_moves[i]);
+			pawn_moves[i] = wall_moves[i] = -1;
+			boards[i].get_possible_moves(to_move[i], move_list);
+			for(int j = move_list.size() - 1; j >= 0; j--){
+				if(Move.packed_is_wall(move_list.get(j)))
+					wall_moves[i] = move_list.get(j);
+				else
+					pawn_moves[i] = move_list.get(j);
+			}
+			grids[i] = boards[i].get_board();
+		}
+	}
+
+	@Benchmark
+	public void copy(Blackhole bh){
+		for(Board b : boards)
+			bh.consume(new Board(b));
+	}
+
+	@Benchmark
+	public void possible_moves(Blackhole bh){
+		for(int i = 0; i < boards.length; i++)
+			bh.consume(boards[i].get_possible_moves(to_move[i]));
+	}
+
+	@Benchmark
+	public void possible_moves_packed(Blackhole bh){
+		for(int i = 0; i < boards.length; i++){
+			boards[i].get_possible_moves(to_move[i], move_list);
+			bh.consume(move_list.size());
+		}
+	}
+
+	@Benchmark
+	public int can_place_wall(){
+		int legal = 0;
+		for(Board b : boards){
+			for(int row = 0; row < 9; row++){
+				for(int col = 0; col < 9; col++){
+					if(b.can_place_wall(row, col, true))
+						legal++;
+					if(b.can_place_wall(row, col, false))
+						legal++;
+				}
+			}
+		}
+		return legal;
+	}
+
+	@Benchmark
+	public int shortest_path(){
+		int total = 0;
+		for(Board b : boards){
+			for(Player_ID id : players_ids)
+				total += b.shortest_path(id);
+		}
+		return total;
+	}
+
+	/**
+	 * Applies and takes back a pawn move and a wall move on every board.
+	 */
+	@Benchmark
+	public void apply_move(Blackhole bh){
+		for(int i = 0; i < boards.length; i++){
+			if(pawn_moves[i] != -1){
+				bh.consume(boards[i].apply_move(pawn_moves[i]));
+				boards[i].undo_move();
+			}
+			if(wall_moves[i] != -1){
+				bh.consume(boards[i].apply_move(wall_moves[i]));
+				boards[i].undo_move();
+			}
+		}
+	}
+
+	/**
+	 * The four distances after every move of the player to move, in one pass.
+	 */
+	@Benchmark
+	public void move_distances(Blackhole bh){
+		for(int i = 0; i < boards.length; i++){
+			distances = boards[i].get_move_distances(all_moves[i], distances);
+			bh.consume(distances);
+		}
+	}
+
+	/**
+	 * move_distances by applying and taking back each move.
+	 */
+	@Benchmark
+	public int move_distances_apply(){
+		int total = 0;
+		for(int i = 0; i < boards.length; i++){
+			for(int j = 0; j < all_moves[i].size(); j++){
+				boards[i].apply_move(all_moves[i].get(j));
+				for(Player_ID id : players_ids)
+					total += boards[i].shortest_path(id);
+				boards[i].undo_move();
+			}
+		}
+		return total;
+	}
+
+	@Benchmark
+	public void dijkstra(Blackhole bh){
+		for(int i = 0; i < boards.length; i++){
+			Coordinate_Pair p = boards[i].get_player_location(to_move[i]);
+			bh.consume(grids[i].dijkstra(p.get_y_coordinate(), p.get_x_coordinate()));
+		}
+	}
+
+	@Benchmark
+	public void bfs(Blackhole bh){
+		for(int i = 0; i < boards.length; i++){
+			Coordinate_Pair p = boards[i].get_player_location(to_move[i]);
+			distances = grids[i].bfs(p.get_y_coordinate(), p.get_x_coordinate(), distances);
+			bh.consume(distances);
+		}
+	}
+
+	/**
+	 * Goal distances of all four players from their goal rows and columns.
+	 */
+	@Benchmark
+	public void bfs_goals(Blackhole bh){
+		for(RectangularGrid<Cell_Status> grid : grids){
+			distances = grid.bfs_from_row(8, distances);
+			distances = grid.bfs_from_column(0, distances);
+			distances = grid.bfs_from_row(0, distances);
+			distances = grid.bfs_from_column(8, distances);
+			bh.consume(distances);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import game.Board;
+import game.Move;
+
+import java.util.Vector;
+
+import players.OneAheadNew_Player;
+import players.OneAhead_Player;
+import players.Player;
+import players.Player_ID;
+
+/**
+ * A corpus of game positions for the benchmarks. The positions come from games between
+ * the one ahead players with fixed seeds, so every run measures the same boards.
+ */
+public class Positions {
+	public static final String OPENING = "opening";
+	public static final String MIDGAME = "midgame";
+	public static final String ENDGAME = "endgame";
+
+	private static final int GAMES = 8;
+	private static final int MAX_TURNS = 200;
+	private static final int TOTAL_WALLS = 20;
+	private static Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, Player_ID.PLAYER_3, Player_ID.PLAYER_4};
+
+	/**
+	 * One position of the given phase from each game that reaches it.
+	 *
+	 * opening - after every player has moved twice
+	 * midgame - the first position with 10 or more walls on the board
+	 * endgame - the first position where a player is one move from its goal
+	 */
+	public static Vector<Board> load(String phase){
+		Vector<Board> boards = new Vector<Board>();
+		for(int game = 0; game < GAMES; game++){
+			Board b = find(phase, game);
+			if(b != null)
+				boards.add(b);
+		}
+		if(boards.isEmpty())
+			throw new IllegalStateException("no " + phase + " positions");
+		return boards;
+	}
+
+	private static Board find(String phase, long seed){
+		Vector<Player> players = new Vector<Player>();
+		for(int i = 0; i < 4; i++){
+			Player p = i % 2 == 0 ? new OneAhead_Player() : new OneAheadNew_Player();
+			p.set_seed(seed * 4 + i);
+			p.set_debug(false);
+			p.set_id(players_ids[i]);
+			players.add(p);
+		}
+
+		Board b = new Board();
+		for(int turn = 0; turn < MAX_TURNS && !b.is_game_over(); turn++){
+			if(matches(phase, b, turn))
+				return new Board(b);
+			Player_ID id = players_ids[turn % 4];
+			if(b.get_possible_moves(id).size() == 0)
+				continue;
+			Move m = players.get(turn % 4).make_move(new Board(b));
+			b.apply_move(m);
+		}
+		return null;
+	}
+
+	private static boolean matches(String phase, Board b, int turn){
+		if(OPENING.equals(phase))
+			return turn == 8;
+		int walls_left = 0;
+		int closest = Integer.MAX_VALUE;
+		for(Player_ID id : players_ids){
+			walls_left += b.get_wall_count(id);
+			closest = Math.min(closest, b.shortest_path(id));
+		}
+		if(MIDGAME.equals(phase))
+			return TOTAL_WALLS - walls_left >= 10;
+		if(ENDGAME.equals(phase))
+			return closest == 1;
+		throw new IllegalArgumentException("unknown phase " + phase);
+	}
+}
@@ -0,0 +1,169 @@
+package driver;
+
+import game.Board;
+import game.Move;
+import game.Quoridor;
+import game.Search_Control;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+
+import players.MinMax_Player;
+import players.Opening_Book;
+import players.Player;
+import players.Player_ID;
+import players.Time_Managed;
+
+/**
+ * Builds an opening book from MinMax self-play, see players.Opening_Book.
+ *
+ * Arguments: number of games, seed, number of plies recorded from the start of each
+ * game, time per move in milliseconds and the book file. A move's weight is the
+ * number of games it was played in, doubled for the games its player won.
+ */
+public class BookGenerator {
+	public static void main(String[] args){
+		int games = 16;
+		long seed = System.currentTimeMillis() % 10000;
+		int plies = 8;
+		long move_time = 2000;
+		String file_name = Opening_Book.DEFAULT_FILE;
+		// parse arguments poorly
+		try {
+			if (args.length > 0)
+				games = Integer.parseInt(args[0]);
+			if (args.length > 1)
+				seed = Long.parseLong(args[1]);
+			if (args.length > 2)
+				plies = Integer.parseInt(args[2]);
+			if (args.length > 3)
+				move_time = Long.parseLong(args[3]);
+		} catch (NumberFormatException e) {
+			System.err.println("Argument must be a integer");
+			System.exit(1);
+		}
+		if (args.length > 4)
+			file_name = args[4];
+		System.out.println ("Using seed: " + seed );
+
+		// position key -> packed move -> weight
+		HashMap<Long, HashMap<Integer, Integer>> book = new HashMap<Long, HashMap<Integer, Integer>>();
+		Random rng = new Random( seed );
+		Vector<Recorder> recorders = new Vector<Recorder>();
+		for( int x = 0; x < games; x++){
+			Vector<Player> players = new Vector<Player>();
+			recorders.removeAllElements();
+			for(int i = 0; i < 4; i++){
+				MinMax_Player p = new MinMax_Player();
+				// the games are played from scratch, not from an earlier book
+				p.set_opening_book( null );
+				p.set_seed( rng.nextLong() );
+				Recorder r = new Recorder( p, plies );
+				recorders.add( r );
+				players.add( r );
+			}
+			Board b = Quoridor.run_game( players, false, null, move_time, Search_Control.NO_GAME_BUDGET );
+			Player_ID winner = b.compute_winner();
+			for(int i = 0; i < 4; i++){
+				Recorder r = recorders.get(i);
+				int weight = ( winner != null && winner.ordinal() == i ) ? 2 : 1;
+				for(int j = 0; j < r.size; j++){
+					HashMap<Integer, Integer> moves = book.get( r.keys[j] );
+					if ( moves == null ) {
+						moves = new HashMap<Integer, Integer>();
+						book.put( r.keys[j], moves );
+					}
+					Integer old = moves.get( r.moves[j] );
+					moves.put( r.moves[j], ( old == null ? 0 : old ) + weight );
+				}
+			}
+			System.out.format( "." );
+		}
+		System.out.println( "" );
+
+		// entries sorted by key
+		Long[] sorted = book.keySet().toArray( new Long[0] );
+		Arrays.sort( sorted );
+		int size = 0;
+		for ( Long key : sorted )
+			size += book.get( key ).size();
+		long[] keys = new long[size];
+		int[] moves = new int[size];
+		int[] weights = new int[size];
+		int n = 0;
+		for ( Long key : sorted ) {
+			for ( Map.Entry<Integer, Integer> e : book.get( key ).entrySet() ) {
+				keys[n] = key;
+				moves[n] = e.getKey();
+				weights[n] = e.getValue();
+				n++;
+			}
+		}
+		try {
+			Opening_Book.write( file_name, keys, moves, weights, size );
+		} catch ( IOException e ) {
+			System.err.println( "Could not write " + file_name + ": " + e.getMessage() );
+			System.exit(1);
+		}
+		System.out.format( "%d positions, %d moves written to %s\n", sorted.length, size, file_name );
+	}
+
+	/**
+	 * Plays for a player and records the positions and moves of its first turns.
+	 */
+	static class Recorder implements Player, Time_Managed {
+		private Player player;
+		long[] keys;
+		int[] moves;
+		int size;
+		private int plies;
+		private int ply;
+
+		Recorder(Player player, int plies) {
+			this.player = player;
+			this.plies = plies;
+			keys = new long[plies];
+			moves = new int[plies];
+		}
+
+		public Move make_move(Board b) {
+			// the book keeps the canonical form of the position and move
+			int rotation = b.get_canonical_rotation();
+			long key = b.get_rotated_key( rotation );
+			Move m = player.make_move( b );
+			if ( ply < plies ) {
+				keys[size] = key;
+				moves[size] = Board.rotate_move( Move.pack( m ), rotation );
+				size++;
+			}
+			ply++;
+			return m;
+		}
+
+		public void notify_of_move(Player_ID player_that_made_move, Move move_made, Board resulting_board) {
+			ply++;
+			player.notify_of_move( player_that_made_move, move_made, resulting_board );
+		}
+
+		public void set_id(Player_ID id) {
+			player.set_id( id );
+		}
+
+		public void set_seed(long seed) {
+			player.set_seed( seed );
+		}
+
+		public void set_debug(boolean debug) {
+			player.set_debug( debug );
+		}
+
+		public void set_search_control(Search_Control control) {
+			if ( player instanceof Time_Managed )
+				((Time_Managed) player).set_search_control( control );
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package driver;
+
+import java.util.Random;
+
+import players.Player;
+
+/**
+ * Creates players of one type, seeded and with debugging off, for the drivers that
+ * play many games.
+ */
+public class PlayerFactory {
+	private Class<?> player_type ;
+	public PlayerFactory( Class<?> player )
+	{ 
+		player_type = player;
+	}
+
+	public Player getPlayer( Random rnd ) {
+		return getPlayer( rnd.nextLong() );
+	}
+
+	public Player getPlayer( long seed ) {
+		try {
+			Player p = (Player) player_type.newInstance();
+			p.set_seed( seed );
+			p.set_debug( false );
+			return p;
+		} catch ( Exception e ) {}
+		return null;
+	}
+}
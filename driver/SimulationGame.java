@@ -0,0 +1,113 @@
+package driver;
+
+import game.Board;
+import game.Simulator;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import players.Player;
+import players.Player_ID;
+
+/**
+ * Plays a batch of headless games with game.Simulator and reports the wins and the
+ * throughput.
+ *
+ * Arguments: number of games, seed, number of games to play at once and the class
+ * names of the four players in the players package, e.g.
+ *
+ *     java driver/SimulationGame 10000 1 4 OneAhead_Player Random_Player OneAhead_Player Wall_Follow_Player
+ */
+public class SimulationGame {
+	public static void main(String[] args){
+		if (args.length < 7) {
+			System.err.println("Arguments: games seed threads player1 player2 player3 player4");
+			System.exit(1);
+		}
+		int games = 0;
+		long seed = 0;
+		int threads = 1;
+		try {
+			games = Integer.parseInt(args[0]);
+			seed = Long.parseLong(args[1]);
+			threads = Math.max(1, Integer.parseInt(args[2]));
+		} catch (NumberFormatException e) {
+			System.err.println("Argument must be a integer");
+			System.exit(1);
+		}
+		final Vector<PlayerFactory> p_builder = new Vector<PlayerFactory>();
+		for (int i = 0; i < 4; i++) {
+			try {
+				p_builder.add(new PlayerFactory(Class.forName("players." + args[3 + i])));
+			} catch (ClassNotFoundException e) {
+				System.err.println("No player players." + args[3 + i]);
+				System.exit(1);
+			}
+		}
+
+		// every game's seeds are drawn up front so the results do not depend on threads
+		Random rng = new Random( seed );
+		long[][] seeds = new long[games][4];
+		for( int x = 0; x < games; x++){
+			for(int i = 0; i < 4; i++){
+				seeds[x][i] = rng.nextLong();
+			}
+		}
+		final Simulator.Line_Up line_up = new Simulator.Line_Up() {
+			public Vector<Player> create(int game) {
+				Vector<Player> players = new Vector<Player>();
+				for(int i = 0; i < 4; i++)
+					players.add( p_builder.get(i).getPlayer( 0 ) );
+				return players;
+			}
+		};
+
+		long start = System.currentTimeMillis();
+		Board[] results = new Board[games];
+		// contiguous slices of the batch, one simulator each
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Vector<Future<Board[]>> slices = new Vector<Future<Board[]>>();
+		int per_slice = (games + threads - 1) / threads;
+		for( int first = 0; first < games; first += per_slice){
+			final long[][] slice = Arrays.copyOfRange(seeds, first, Math.min(games, first + per_slice));
+			slices.add( pool.submit( new Callable<Board[]>() {
+				public Board[] call() {
+					return new Simulator().play( line_up, slice );
+				}
+			}));
+		}
+		try {
+			int x = 0;
+			for ( Future<Board[]> f : slices )
+				for ( Board b : f.get() )
+					results[x++] = b;
+		} catch ( InterruptedException e ) {
+			throw new RuntimeException( e );
+		} catch ( ExecutionException e ) {
+			throw new RuntimeException( e.getCause() );
+		}
+		pool.shutdown();
+		long elapsed = System.currentTimeMillis() - start;
+
+		int[] scores = {0,0,0,0};
+		int ties = 0;
+		for ( Board b : results ) {
+			Player_ID winner = b.compute_winner();
+			if ( winner == null )
+				ties++;
+			else
+				scores[winner.ordinal()]++;
+		}
+		for(int i = 0; i < 4; i++)
+			System.out.format("%20s: %d\n", args[3 + i], scores[i]);
+		System.out.format("%20s: %d\n", "Ties", ties);
+		System.out.format ("Time: %.1fs on %d threads, %.0f games/hour\n", elapsed / 1000.0, threads,
+			games / Math.max( elapsed / 3600000.0, 1e-9 ) );
+	}
+}
@@ -1,10 +1,20 @@
 package driver;
 
 import game.Board;
+import game.Metrics;
+import game.Metrics_Recorder;
 import game.Quoridor;
 
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Vector;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import players.Player;
 import players.Player_ID;
@@ -17,6 +27,13 @@ import players.Wall_Follow_Player;
 
 /**
  * Set up and run a simple Quoridor Tournament
+ *
+ * Arguments: game type, number of games, seed, number of games to play at once and the
+ * name the turn metrics are exported under, as <name>.csv and <name>.json. Without a
+ * name no metrics are recorded or written.
+ * Games run in parallel are independent, every game gets its own players and the
+ * player seeds are drawn before any game starts, so the results do not depend on the
+ * number of threads.
  */
 public class TournamentGame {
 	public static void main(String[] args){
@@ -49,6 +66,17 @@ public class TournamentGame {
 				System.exit(1);
 			}
 		}
+		int threads = 1; // games played at once
+		if (args.length > 3) {
+			try {
+				threads = Math.max(1, Integer.parseInt(args[3]));
+			} catch (NumberFormatException e) {
+				System.err.println("Argument must be a integer");
+				System.exit(1);
+			}
+		}
+		String metrics_name = args.length > 4 ? args[4] : null;
+		Metrics_Recorder metrics = metrics_name != null ? new Metrics_Recorder() : null;
 		System.out.println ("Game type: " + game_type );
 		System.out.println ("Using seed: " + seed );
 
@@ -116,7 +144,6 @@ public class TournamentGame {
 
 		Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, 
 		                                          Player_ID.PLAYER_3, Player_ID.PLAYER_4};
-		Vector<Player> players = new Vector<Player>();
 		int[] scores = {0,0,0,0};
 		int[] wall_count = {0,0,0,0};
 		int[] distance = {0,0,0,0};
@@ -157,22 +184,44 @@ public class TournamentGame {
 		{3,2,0,1},
 		{3,2,1,0},
 		};
+		// draw every seed up front, in the order the games would use them
+		long[][] seeds = new long[games][4];
+		for( int x = 0; x < games; x++){
+			for(int i = 0; i < 4; i++){
+				seeds[x][i] = rng.nextLong();
+			}
+		}
+
 		// run games
+		long start = System.currentTimeMillis();
+		ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		Vector<Future<Board>> results = new Vector<Future<Board>>();
+		if ( pool != null ) {
+			for( int x = 0; x < games; x++){
+				results.add( pool.submit( new Game(p_builder, orders[ x % orders.length ], seeds[x], metrics) ) );
+			}
+		}
+		// results are merged in game order
 		for( int x = 0; x < games; x++){
 			int [] order = orders[ x % orders.length ] ;
+			Board b;
+			try {
+				if ( pool != null )
+					b = results.get(x).get();
+				else
+					b = new Game(p_builder, order, seeds[x], metrics).call();
+			} catch ( InterruptedException e ) {
+				throw new RuntimeException( e );
+			} catch ( ExecutionException e ) {
+				throw new RuntimeException( e.getCause() );
+			}
 			//System.out.format( "Game %d out of %d\n", x, games);
 			System.out.format( ".");
-			players = new Vector<Player>();
-			for(int i = 0; i < 4; i++){
-				players.add( p_builder.get(order[i]).getPlayer(rng ) );
-			}
-
-			Board b = Quoridor.run_game(players, false);
 			Player_ID winner = b.compute_winner();
 
 //			System.out.println("               Current   Walls  Distance");
 //			System.out.println("               Location  Left    to Win");
-			for(int i = 0; i < players.size(); i++){
+			for(int i = 0; i < 4; i++){
 //				System.out.format("%13s:  (%d,%d) %6d %7d\n", names.get(order[i]),
 //					b.get_player_location(players_ids[i]).get_x_coordinate(),
 //					b.get_player_location(players_ids[i]).get_y_coordinate(),
@@ -193,36 +242,62 @@ public class TournamentGame {
 			}
 			//System.out.println("");
 		}
+		if ( pool != null )
+			pool.shutdown();
+		long elapsed = System.currentTimeMillis() - start;
 
 		System.out.println("");
 		System.out.println("");
 		System.out.println("===============RESULTS==================");
 		System.out.println("                Wins    Walls  Distance");
 		System.out.println("                        Left    to Win");
-		for(int i = 0; i < players.size(); i++){
+		for(int i = 0; i < names.size(); i++){
 			System.out.format("%13s: %4d %8.2f %8.2f\n", names.get(i),
 				scores[i], wall_count[i]*1.0/games, distance[i]*1.0/games );
 		}
 
 		System.out.println ("Game type: " + game_type );
 		System.out.println ("Seed: " + seed );
+		System.out.format ("Time: %.1fs on %d threads, %.0f games/hour\n", elapsed / 1000.0, threads,
+			games * 3600000.0 / Math.max(elapsed, 1) );
+
+		if ( metrics == null )
+			return;
+		try {
+			PrintWriter csv = new PrintWriter( new FileWriter( metrics_name + ".csv" ) );
+			metrics.write_csv( csv );
+			csv.close();
+			PrintWriter json = new PrintWriter( new FileWriter( metrics_name + ".json" ) );
+			metrics.write_json( json );
+			json.close();
+			System.out.println ("Metrics: " + metrics_name + ".csv, " + metrics_name + ".json" );
+		} catch ( IOException e ) {
+			System.err.println("Could not write metrics: " + e.getMessage() );
+		}
 	}
 }
 
-class PlayerFactory {
-	private Class<?> player_type ;
-	public PlayerFactory( Class<?> player )
-	{ 
-		player_type = player;
+/**
+ * One game of a tournament, with its own players.
+ */
+class Game implements Callable<Board> {
+	private Vector<PlayerFactory> p_builder;
+	private int[] order;
+	private long[] seeds;
+	private Metrics metrics;
+
+	public Game( Vector<PlayerFactory> p_builder, int[] order, long[] seeds, Metrics metrics ) {
+		this.p_builder = p_builder;
+		this.order = order;
+		this.seeds = seeds;
+		this.metrics = metrics;
 	}
 
-	public Player getPlayer( Random rnd ) {
-		try {
-			Player p = (Player) player_type.newInstance();
-			p.set_seed( rnd.nextLong() );
-			p.set_debug( false );
-			return p;
-		} catch ( Exception e ) {}
-		return null;
+	public Board call() {
+		Vector<Player> players = new Vector<Player>();
+		for(int i = 0; i < 4; i++){
+			players.add( p_builder.get(order[i]).getPlayer( seeds[i] ) );
+		}
+		return Quoridor.run_game(players, false, metrics);
 	}
 }
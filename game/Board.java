@@ -1,12 +1,10 @@
 package game;
 import game.Move.MOVE_TYPE;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Stack;
 import java.util.Vector;
-import java.util.Comparator;
-import java.util.PriorityQueue;
+import java.util.Random;
 
 
 import players.Player_ID;
@@ -15,114 +13,978 @@ import players.Player_ID;
  * This class contains all of the state information for a game of Quoridor. The methods for manipulating
  * this state, according to the rules of Quoridor, are also provided. 
  * 
+ * The state is kept as bitboards. Cell (row, col) has index row*BOARD_SIZE + col, the pawn
+ * occupancy is a two word bitset over the cell indices, and each wall orientation is a single
+ * long with one bit per wall slot. Whether a step between two cells is blocked is answered by
+ * masking the wall words with a precomputed table of the slots that block that step.
+ *
  * @author bswilson
  *
  */
 public class Board {
 	private static final int BOARD_SIZE = 9;
 	private static final int INITIAL_WALLS = 5;
-	private RectangularGrid<Cell_Status> board;
-	private Coordinate_Pair[] player_location;
-	private Path[] cached_path;
-	private HashMap<Coordinate_Pair, Boolean> horizontal_wall_placement_locations;
-	private HashMap<Coordinate_Pair, Boolean> vertical_wall_placement_locations;
+	private static final int CELLS = BOARD_SIZE * BOARD_SIZE;
+
+	// step directions, used to index STEP, EDGE_BLOCKED and BLOCKERS
+	private static final int UP = 0;
+	private static final int DOWN = 1;
+	private static final int LEFT = 2;
+	private static final int RIGHT = 3;
+	private static final int[] STEP = {-BOARD_SIZE, BOARD_SIZE, -1, 1};
+	// goal distance of a cell that cannot reach the goal
+	private static final int UNREACHABLE = Byte.MAX_VALUE;
+	// wall end points are cell corners, point (r, c) is the upper left corner of cell (r, c)
+	private static final int POINTS = (BOARD_SIZE + 1) * (BOARD_SIZE + 1);
+
+	// bit d is set if a step in direction d leaves the board from this cell
+	private static final int[] EDGE_BLOCKED = new int[CELLS];
+	// the wall slots that block a step in direction d from a cell, horizontal slots
+	// for UP/DOWN and vertical slots for LEFT/RIGHT
+	private static final long[][] BLOCKERS = new long[4][CELLS];
+	// coordinate pairs are immutable so every cell shares one instance
+	private static final Coordinate_Pair[] COORDINATES = new Coordinate_Pair[CELLS];
+	private static final Player_ID[] PLAYER_IDS = Player_ID.values();
+	// row and column change of every pawn move, steps, diagonal moves and jumps
+	private static final int[][] PAWN_OFFSETS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1},
+		{-1, -1}, {-1, 1}, {1, 1}, {1, -1}, {-2, 0}, {2, 0}, {0, -2}, {0, 2}};
+
+	// Zobrist keys, the position key is the xor of the keys of every pawn location,
+	// placed wall, remaining wall count and the side to move. The generator is seeded
+	// so keys are the same in every run and can be stored.
+	private static final long[][] PAWN_KEYS = new long[4][CELLS];
+	private static final long[] HORIZONTAL_WALL_KEYS = new long[64];
+	private static final long[] VERTICAL_WALL_KEYS = new long[64];
+	private static final long[][] WALL_COUNT_KEYS = new long[4][INITIAL_WALLS + 1];
+	private static final long[] SIDE_TO_MOVE_KEYS = new long[4];
+
+	// the position turned by k quarter turns, see get_rotated_key. ROTATED_CELLS[k] maps
+	// cells, ROTATED_HORIZONTAL[k] and ROTATED_VERTICAL[k] map wall slots to a slot
+	// and ROTATED_TO_HORIZONTAL if the turned wall is horizontal.
+	private static final int[][] ROTATED_CELLS = new int[4][CELLS];
+	private static final int[][] ROTATED_HORIZONTAL = new int[4][64];
+	private static final int[][] ROTATED_VERTICAL = new int[4][64];
+	private static final int ROTATED_TO_HORIZONTAL = 1 << 6;
+
+	static {
+		for(int row = 0; row < BOARD_SIZE; row++){
+			for(int col = 0; col < BOARD_SIZE; col++){
+				int c = cell(row, col);
+				COORDINATES[c] = new Coordinate_Pair(row, col);
+				if(row == 0)            EDGE_BLOCKED[c] |= 1 << UP;
+				if(row == BOARD_SIZE-1) EDGE_BLOCKED[c] |= 1 << DOWN;
+				if(col == 0)            EDGE_BLOCKED[c] |= 1 << LEFT;
+				if(col == BOARD_SIZE-1) EDGE_BLOCKED[c] |= 1 << RIGHT;
+			}
+		}
+		for(int row = 1; row < BOARD_SIZE; row++){
+			for(int col = 0; col < BOARD_SIZE-1; col++){
+				long bit = 1L << horizontal_slot(row, col);
+				BLOCKERS[UP][cell(row, col)] |= bit;
+				BLOCKERS[UP][cell(row, col+1)] |= bit;
+				BLOCKERS[DOWN][cell(row-1, col)] |= bit;
+				BLOCKERS[DOWN][cell(row-1, col+1)] |= bit;
+			}
+		}
+		for(int row = 0; row < BOARD_SIZE-1; row++){
+			for(int col = 1; col < BOARD_SIZE; col++){
+				long bit = 1L << vertical_slot(row, col);
+				BLOCKERS[LEFT][cell(row, col)] |= bit;
+				BLOCKERS[LEFT][cell(row+1, col)] |= bit;
+				BLOCKERS[RIGHT][cell(row, col-1)] |= bit;
+				BLOCKERS[RIGHT][cell(row+1, col-1)] |= bit;
+			}
+		}
+
+		Random keys = new Random(0x5155524944L);
+		for(int p = 0; p < 4; p++){
+			for(int c = 0; c < CELLS; c++)
+				PAWN_KEYS[p][c] = keys.nextLong();
+			for(int count = 0; count <= INITIAL_WALLS; count++)
+				WALL_COUNT_KEYS[p][count] = keys.nextLong();
+			SIDE_TO_MOVE_KEYS[p] = keys.nextLong();
+		}
+		for(int slot = 0; slot < 64; slot++){
+			HORIZONTAL_WALL_KEYS[slot] = keys.nextLong();
+			VERTICAL_WALL_KEYS[slot] = keys.nextLong();
+		}
+
+		for(int k = 0; k < 4; k++){
+			for(int c = 0; c < CELLS; c++){
+				int m = rotate_move(Move.pack(MOVE_TYPE.MOVE_PAWN, PLAYER_IDS[0], c / BOARD_SIZE, c % BOARD_SIZE, false), k);
+				ROTATED_CELLS[k][c] = cell(Move.packed_row(m), Move.packed_col(m));
+			}
+			for(int row = 1; row < BOARD_SIZE; row++){
+				for(int col = 0; col < BOARD_SIZE-1; col++){
+					int m = rotate_move(Move.pack(MOVE_TYPE.PLACE_WALL, PLAYER_IDS[0], row, col, true), k);
+					ROTATED_HORIZONTAL[k][horizontal_slot(row, col)] = rotated_slot(m);
+				}
+			}
+			for(int row = 0; row < BOARD_SIZE-1; row++){
+				for(int col = 1; col < BOARD_SIZE; col++){
+					int m = rotate_move(Move.pack(MOVE_TYPE.PLACE_WALL, PLAYER_IDS[0], row, col, false), k);
+					ROTATED_VERTICAL[k][vertical_slot(row, col)] = rotated_slot(m);
+				}
+			}
+		}
+	}
+
+	private static int rotated_slot(int packed_wall){
+		if(Move.packed_is_horizontal(packed_wall))
+			return horizontal_slot(Move.packed_row(packed_wall), Move.packed_col(packed_wall)) | ROTATED_TO_HORIZONTAL;
+		return vertical_slot(Move.packed_row(packed_wall), Move.packed_col(packed_wall));
+	}
+
+	// cell index of each player's pawn
+	private int[] player_location;
+	// pawn occupancy, cells 0-63 in the low word and 64-80 in the high word
+	private long occupied_low;
+	private long occupied_high;
+	// placed walls, one bit per slot (see horizontal_slot and vertical_slot)
+	private long horizontal_walls;
+	private long vertical_walls;
 	private int[] walls;
-	
-	// Cache
-	public int cache_hit;
-	public int cache_miss;
+	// index of the player whose turn it is, the player after the last one to move
+	private int to_move;
+	private long zobrist_key;
+	// distance from every cell to each player's goal ignoring pawns, player p's map
+	// starts at p*CELLS. Kept current as walls are placed and taken back.
+	private byte[] goal_distance;
+	// scratch space for the distance updates, allocated on first use
+	private int[] scratch_queue;
+	private int[] scratch_next;
+	private int[] scratch_bucket;
+	private int[] scratch_mark;
+	private int mark_stamp;
+	// component of every cell corner in the graph of placed walls and the board edge,
+	// rebuilt on demand after the walls change
+	private int[] wall_component;
+	private boolean wall_components_valid;
+	// reused by get_possible_moves(Player_ID)
+	private Move_List move_buffer;
+	// shortest path cells of each player, see get_relevant_moves
+	private long[][] path_cells;
+	// distance maps of wall configurations seen before, null to always repair the maps
+	private Distance_Cache distance_cache;
+	// this board's lookup key of the cache
+	private Distance_Cache.Probe distance_probe;
+	// a known path from every pawn to its goal, see has_goal_path. Player p's cells run
+	// from its goal at p*CELLS to its pawn at p*CELLS + path_length[p] - 1, and are the
+	// bitset path_set[2p], path_set[2p+1]. A length of 0 means no known path, a stale
+	// path may have been cut by a placed wall and is checked before it is used.
+	private byte[] path_steps;
+	private int[] path_length;
+	private long[] path_set;
+	private boolean[] path_stale;
+	// goal path queries since the board was made, answered by the known path or searched
+	private int path_hits;
+	private int path_misses;
+
+	// undo stack, one packed record per applied move, records between history_size
+	// and redo_size have been undone and can be redone
+	private int[] history;
+	private int history_size;
+	private int redo_size;
+	// record layout: bits 0-6 the pawn's from cell or the wall slot, bits 7-13 the
+	// pawn's to cell, bits 14-15 the player, then the wall and orientation flags and
+	// bits 18-19 the side to move before the move
+	private static final int RECORD_WALL = 1 << 16;
+	private static final int RECORD_HORIZONTAL = 1 << 17;
 
 	/**
 	 * Construct the initial Quoridor board and player locations.
 	 */
 	public Board(){
-		//initialize an empty board with all cell open
-		Cell_Status[][] cells = new Cell_Status[BOARD_SIZE][BOARD_SIZE];
-		for(int i = 0; i < BOARD_SIZE; i++){
-			for(int j = 0; j < BOARD_SIZE; j++){
-				cells[i][j] = Cell_Status.FREE;
-			}
-		}
-		board = new RectangularGrid<Cell_Status>(BOARD_SIZE, BOARD_SIZE, cells);
 		walls = new int[]{INITIAL_WALLS, INITIAL_WALLS, INITIAL_WALLS, INITIAL_WALLS};
 		
-		player_location = new Coordinate_Pair[4];
 		//put player pawns on the board in starting locations
-		board.get_cell(0, BOARD_SIZE/2).set_data(Cell_Status.P1);
-		player_location[0] = new Coordinate_Pair(0, BOARD_SIZE/2);
-		board.get_cell(BOARD_SIZE/2, BOARD_SIZE-1).set_data(Cell_Status.P2);
-		player_location[1] = new Coordinate_Pair(BOARD_SIZE/2, BOARD_SIZE - 1);
-		board.get_cell(BOARD_SIZE-1, BOARD_SIZE/2).set_data(Cell_Status.P3);
-		player_location[2] = new Coordinate_Pair(BOARD_SIZE-1, BOARD_SIZE/2);
-		board.get_cell(BOARD_SIZE/2, 0).set_data(Cell_Status.P4);
-		player_location[3] = new Coordinate_Pair(BOARD_SIZE/2, 0);
-
-		// Create cached_path
-		cached_path = new Path[4];
-		cache_hit = 0;
-		cache_miss = 0;
-		
-		horizontal_wall_placement_locations = new HashMap<Coordinate_Pair, Boolean>();
-		vertical_wall_placement_locations = new HashMap<Coordinate_Pair, Boolean>();
+		player_location = new int[]{cell(0, BOARD_SIZE/2), cell(BOARD_SIZE/2, BOARD_SIZE - 1),
+		                            cell(BOARD_SIZE-1, BOARD_SIZE/2), cell(BOARD_SIZE/2, 0)};
+		for(int i = 0; i < 4; i++){
+			toggle_occupied(player_location[i]);
+		}
+		to_move = 0;
+		zobrist_key = compute_zobrist_key();
+		goal_distance = new byte[4 * CELLS];
+		for(int p = 0; p < 4; p++){
+			compute_goal_distances(p);
+		}
+		path_steps = new byte[4 * CELLS];
+		path_length = new int[4];
+		path_set = new long[8];
+		path_stale = new boolean[4];
 	}
 	
 	/**
-	 * Copy constructor to make a deep copy
+	 * Copy constructor to make a deep copy, the copy starts with an empty undo history
 	 * @param b
 	 */
 	public Board(Board b){
-		//copy all cell statuses
-		Cell_Status[][] cells = new Cell_Status[BOARD_SIZE][BOARD_SIZE];
-		for(int i = 0; i < BOARD_SIZE; i++){
-			for(int j = 0; j < BOARD_SIZE; j++){
-				cells[i][j] = b.get_board().get_cell(i, j).get_data();
-			}
-		}
-		
-		board = new RectangularGrid<Cell_Status>(BOARD_SIZE, BOARD_SIZE, cells);
 		walls = new int[]{b.walls[0], b.walls[1], b.walls[2], b.walls[3]};
-		
-        player_location = new Coordinate_Pair[4];
-		//put player pawns on the board in starting locations
-		board.get_cell(b.player_location[0].get_y_coordinate(), b.player_location[0].get_x_coordinate()).set_data(Cell_Status.P1);
-		player_location[0] = new Coordinate_Pair(b.player_location[0].get_y_coordinate(), b.player_location[0].get_x_coordinate());
-		board.get_cell(b.player_location[1].get_y_coordinate(), b.player_location[1].get_x_coordinate()).set_data(Cell_Status.P2);
-		player_location[1] = new Coordinate_Pair(b.player_location[1].get_y_coordinate(), b.player_location[1].get_x_coordinate());
-		board.get_cell(b.player_location[2].get_y_coordinate(), b.player_location[2].get_x_coordinate()).set_data(Cell_Status.P3);
-		player_location[2] = new Coordinate_Pair(b.player_location[2].get_y_coordinate(), b.player_location[2].get_x_coordinate());
-		board.get_cell(b.player_location[3].get_y_coordinate(), b.player_location[3].get_x_coordinate()).set_data(Cell_Status.P4);
-		player_location[3] = new Coordinate_Pair(b.player_location[3].get_y_coordinate(), b.player_location[3].get_x_coordinate());
-	
-		// Create copy the cache
-		cached_path = new Path[4];
-		for (int i = 0; i < 4 ; i++ )
-			cached_path[i] = b.cached_path[i];
-		cache_hit = 0;
-		cache_miss = 0;
-
-		horizontal_wall_placement_locations = new HashMap<Coordinate_Pair, Boolean>();
-		vertical_wall_placement_locations = new HashMap<Coordinate_Pair, Boolean>();
-		for(Coordinate_Pair key : b.horizontal_wall_placement_locations.keySet()){
-			int row = key.get_y_coordinate();
-			int col = key.get_x_coordinate();
-			board.get_cell(row, col).get_neighbors().remove(board.get_cell(row-1, col));
-			board.get_cell(row-1, col).get_neighbors().remove(board.get_cell(row, col));
-			board.get_cell(row, col+1).get_neighbors().remove(board.get_cell(row-1, col+1));
-			board.get_cell(row-1, col+1).get_neighbors().remove(board.get_cell(row, col+1));
-
-			horizontal_wall_placement_locations.put(new Coordinate_Pair(row, col), true);
-		}
-		for(Coordinate_Pair key : b.vertical_wall_placement_locations.keySet()){
-			int row = key.get_y_coordinate();
-			int col = key.get_x_coordinate();
+		player_location = new int[]{b.player_location[0], b.player_location[1], b.player_location[2], b.player_location[3]};
+		occupied_low = b.occupied_low;
+		occupied_high = b.occupied_high;
+		horizontal_walls = b.horizontal_walls;
+		vertical_walls = b.vertical_walls;
+		to_move = b.to_move;
+		zobrist_key = b.zobrist_key;
+		goal_distance = b.goal_distance.clone();
+		path_steps = b.path_steps.clone();
+		path_length = b.path_length.clone();
+		path_set = b.path_set.clone();
+		path_stale = b.path_stale.clone();
+	}
+
+	/**
+	 * Sets the cache of goal distance maps consulted when walls are placed or taken back,
+	 * null to repair the maps every time. Like the undo history it belongs to the board
+	 * and is not copied.
+	 * 
+	 * @param cache
+	 */
+	public void set_distance_cache(Distance_Cache cache){
+		distance_cache = cache;
+		if(cache != null && distance_probe == null)
+			distance_probe = new Distance_Cache.Probe();
+	}
+
+	/**
+	 * Makes this board a copy of another without allocating, like the copy constructor
+	 * the undo history is cleared.
+	 * 
+	 * @param b
+	 */
+	public void copy_from(Board b){
+		System.arraycopy(b.walls, 0, walls, 0, 4);
+		System.arraycopy(b.player_location, 0, player_location, 0, 4);
+		occupied_low = b.occupied_low;
+		occupied_high = b.occupied_high;
+		horizontal_walls = b.horizontal_walls;
+		vertical_walls = b.vertical_walls;
+		to_move = b.to_move;
+		zobrist_key = b.zobrist_key;
+		System.arraycopy(b.goal_distance, 0, goal_distance, 0, goal_distance.length);
+		System.arraycopy(b.path_steps, 0, path_steps, 0, path_steps.length);
+		System.arraycopy(b.path_length, 0, path_length, 0, 4);
+		System.arraycopy(b.path_set, 0, path_set, 0, 8);
+		System.arraycopy(b.path_stale, 0, path_stale, 0, 4);
+		wall_components_valid = false;
+		history_size = redo_size = 0;
+		path_hits = path_misses = 0;
+	}
+
+	private static int cell(int row, int col){
+		return row * BOARD_SIZE + col;
+	}
+
+	/**
+	 * Slot of the horizontal wall anchored at (row, col), rows 1 to 8 and columns 0 to 7.
+	 */
+	private static int horizontal_slot(int row, int col){
+		return (row - 1) * (BOARD_SIZE - 1) + col;
+	}
+
+	/**
+	 * Slot of the vertical wall anchored at (row, col), rows 0 to 7 and columns 1 to 8.
+	 */
+	private static int vertical_slot(int row, int col){
+		return row * (BOARD_SIZE - 1) + col - 1;
+	}
+
+	/**
+	 * Can a pawn step from the cell in the given direction, i.e. is there neither a wall
+	 * nor the edge of the board in the way.
+	 */
+	private boolean is_open(int cell, int dir){
+		if((EDGE_BLOCKED[cell] & (1 << dir)) != 0)
+			return false;
+		long placed = dir <= DOWN ? horizontal_walls : vertical_walls;
+		return (placed & BLOCKERS[dir][cell]) == 0;
+	}
+
+	/**
+	 * Are the two cells orthogonally adjacent with no wall between them.
+	 */
+	private boolean are_cells_neighbors(int row1, int col1, int row2, int col2){
+		int from = cell(row1, col1);
+		if(col1 == col2){
+			if(row2 == row1 - 1)
+				return is_open(from, UP);
+			if(row2 == row1 + 1)
+				return is_open(from, DOWN);
+		}
+		else if(row1 == row2){
+			if(col2 == col1 - 1)
+				return is_open(from, LEFT);
+			if(col2 == col1 + 1)
+				return is_open(from, RIGHT);
+		}
+		return false;
+	}
 	
-			board.get_cell(row, col).get_neighbors().remove(board.get_cell(row, col-1));
-			board.get_cell(row, col-1).get_neighbors().remove(board.get_cell(row, col));
-			board.get_cell(row+1, col).get_neighbors().remove(board.get_cell(row+1, col-1));
-			board.get_cell(row+1, col-1).get_neighbors().remove(board.get_cell(row+1, col));
+	private boolean is_occupied(int row, int col){
+		int c = cell(row, col);
+		if(c < 64)
+			return (occupied_low & (1L << c)) != 0;
+		return (occupied_high & (1L << (c - 64))) != 0;
+	}
+
+	private void toggle_occupied(int c){
+		if(c < 64)
+			occupied_low ^= 1L << c;
+		else
+			occupied_high ^= 1L << (c - 64);
+	}
+
+	/**
+	 * Move the pawn of the player with the given index to the cell, no legality checks.
+	 */
+	private void place_pawn(int player, int row, int col){
+		follow_pawn(player, cell(row, col));
+		toggle_occupied(player_location[player]);
+		zobrist_key ^= PAWN_KEYS[player][player_location[player]];
+		player_location[player] = cell(row, col);
+		toggle_occupied(player_location[player]);
+		zobrist_key ^= PAWN_KEYS[player][player_location[player]];
+	}
+
+	/**
+	 * Add or remove the wall in the given slot, keeping the position key up to date.
+	 */
+	private void toggle_wall(int slot, boolean horizontal){
+		wall_components_valid = false;
+		boolean placing;
+		// the two steps the wall blocks, from the upper/left side of the wall
+		int a, b;
+		if(horizontal){
+			horizontal_walls ^= 1L << slot;
+			zobrist_key ^= HORIZONTAL_WALL_KEYS[slot];
+			placing = (horizontal_walls & (1L << slot)) != 0;
+			a = cell(slot / (BOARD_SIZE-1), slot % (BOARD_SIZE-1));
+			b = a + 1;
+		}
+		else{
+			vertical_walls ^= 1L << slot;
+			zobrist_key ^= VERTICAL_WALL_KEYS[slot];
+			placing = (vertical_walls & (1L << slot)) != 0;
+			a = cell(slot / (BOARD_SIZE-1), slot % (BOARD_SIZE-1));
+			b = a + BOARD_SIZE;
+		}
+		int dir = horizontal ? DOWN : RIGHT;
+		if(placing){
+			for(int p = 0; p < 4; p++){
+				if(may_cut_path(p, a, a + STEP[dir]) || may_cut_path(p, b, b + STEP[dir]))
+					path_stale[p] = true;
+			}
+		}
+		if(distance_cache != null && distance_cache.get(distance_probe, horizontal_walls, vertical_walls, goal_distance))
+			return;
+		for(int p = 0; p < 4; p++){
+			if(placing)
+				cut_edges(p, a, a + STEP[dir], b, b + STEP[dir]);
+			else
+				join_edges(p, a, a + STEP[dir], b, b + STEP[dir]);
+		}
+		if(distance_cache != null)
+			distance_cache.put(distance_probe, horizontal_walls, vertical_walls, goal_distance);
+	}
+
+	private static boolean on_board(int row, int col){
+		return row >= 0 && col >= 0 && row < BOARD_SIZE && col < BOARD_SIZE;
+	}
+
+	private static boolean is_goal(int player, int c){
+		switch(player){
+			case 0:
+				return c / BOARD_SIZE == BOARD_SIZE - 1;
+			case 1:
+				return c % BOARD_SIZE == 0;
+			case 2:
+				return c / BOARD_SIZE == 0;
+			default:
+				return c % BOARD_SIZE == BOARD_SIZE - 1;
+		}
+	}
+
+	private void allocate_scratch(){
+		if(scratch_queue == null){
+			scratch_queue = new int[CELLS];
+			scratch_next = new int[CELLS];
+			scratch_bucket = new int[UNREACHABLE + 2];
+			scratch_mark = new int[CELLS];
+		}
+	}
+
+	/**
+	 * Breadth first search from all of the player's goal cells.
+	 */
+	private void compute_goal_distances(int player){
+		allocate_scratch();
+		int base = player * CELLS;
+		int tail = 0;
+		for(int c = 0; c < CELLS; c++){
+			if(is_goal(player, c)){
+				goal_distance[base + c] = 0;
+				scratch_queue[tail++] = c;
+			}
+			else
+				goal_distance[base + c] = UNREACHABLE;
+		}
+		for(int head = 0; head < tail; head++){
+			int x = scratch_queue[head];
+			for(int dir = UP; dir <= RIGHT; dir++){
+				int y = x + STEP[dir];
+				if(is_open(x, dir) && goal_distance[base + y] == UNREACHABLE){
+					goal_distance[base + y] = (byte)(goal_distance[base + x] + 1);
+					scratch_queue[tail++] = y;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Does the cell still have a step to a cell one closer to the goal that is not marked
+	 * as having lost its distance.
+	 */
+	private boolean has_support(int base, int x){
+		int d = goal_distance[base + x];
+		if(d == 0)
+			return true;
+		for(int dir = UP; dir <= RIGHT; dir++){
+			int y = x + STEP[dir];
+			if(is_open(x, dir) && goal_distance[base + y] == d - 1 && scratch_mark[y] != mark_stamp)
+				return true;
+		}
+		return false;
+	}
+
+	private void push_bucket(int x, int level){
+		scratch_next[x] = scratch_bucket[level];
+		scratch_bucket[level] = x;
+	}
+
+	/**
+	 * Updates a player's goal distances after the steps a1-a2 and b1-b2 were blocked.
+	 * Only cells that lost every shortest step to the goal get new distances: they are
+	 * found in order of their old distance, then their distances are rebuilt from the
+	 * unaffected cells around them.
+	 */
+	private void cut_edges(int player, int a1, int a2, int b1, int b2){
+		int base = player * CELLS;
+		// a cut only matters where it was a shortest step
+		int first = -1, second = -1;
+		if(goal_distance[base + a1] != goal_distance[base + a2]){
+			first = goal_distance[base + a1] > goal_distance[base + a2] ? a1 : a2;
+		}
+		if(goal_distance[base + b1] != goal_distance[base + b2]){
+			second = goal_distance[base + b1] > goal_distance[base + b2] ? b1 : b2;
+		}
+		if(first == -1 && second == -1)
+			return;
+		allocate_scratch();
+		mark_stamp++;
+		int queued_stamp = -mark_stamp;
+
+		// find the cells whose distance grows, in increasing order of old distance
+		Arrays.fill(scratch_bucket, -1);
+		int low = UNREACHABLE;
+		if(first != -1){
+			push_bucket(first, goal_distance[base + first]);
+			scratch_mark[first] = queued_stamp;
+			low = goal_distance[base + first];
+		}
+		if(second != -1 && scratch_mark[second] != queued_stamp){
+			push_bucket(second, goal_distance[base + second]);
+			scratch_mark[second] = queued_stamp;
+			low = Math.min(low, goal_distance[base + second]);
+		}
+		int affected = 0;
+		for(int level = low; level < UNREACHABLE; level++){
+			while(scratch_bucket[level] != -1){
+				int x = scratch_bucket[level];
+				scratch_bucket[level] = scratch_next[x];
+				if(has_support(base, x)){
+					scratch_mark[x] = 0;
+					continue;
+				}
+				scratch_mark[x] = mark_stamp;
+				scratch_queue[affected++] = x;
+				for(int dir = UP; dir <= RIGHT; dir++){
+					int y = x + STEP[dir];
+					if(is_open(x, dir) && goal_distance[base + y] == level + 1 &&
+							scratch_mark[y] != mark_stamp && scratch_mark[y] != queued_stamp){
+						push_bucket(y, level + 1);
+						scratch_mark[y] = queued_stamp;
+					}
+				}
+			}
+		}
+		if(affected == 0)
+			return;
+
+		// rebuild the affected cells from their unaffected neighbors
+		for(int i = 0; i < affected; i++){
+			int x = scratch_queue[i];
+			int best = UNREACHABLE;
+			for(int dir = UP; dir <= RIGHT; dir++){
+				int y = x + STEP[dir];
+				if(is_open(x, dir) && scratch_mark[y] != mark_stamp && goal_distance[base + y] + 1 < best)
+					best = goal_distance[base + y] + 1;
+			}
+			goal_distance[base + x] = (byte)best;
+		}
+		relax(base, scratch_queue, affected);
+	}
+
+	/**
+	 * Updates a player's goal distances after the steps a1-a2 and b1-b2 were reopened,
+	 * distances can only shrink so they are relaxed outwards from the reopened steps.
+	 */
+	private void join_edges(int player, int a1, int a2, int b1, int b2){
+		int base = player * CELLS;
+		allocate_scratch();
+		int count = join_edge(base, a1, a2, 0);
+		count = join_edge(base, b1, b2, count);
+		if(count > 0)
+			relax(base, scratch_queue, count);
+	}
+
+	private int join_edge(int base, int x, int y, int count){
+		if(goal_distance[base + x] + 1 < goal_distance[base + y]){
+			goal_distance[base + y] = (byte)(goal_distance[base + x] + 1);
+			scratch_queue[count++] = y;
+		}
+		else if(goal_distance[base + y] + 1 < goal_distance[base + x]){
+			goal_distance[base + x] = (byte)(goal_distance[base + y] + 1);
+			scratch_queue[count++] = x;
+		}
+		return count;
+	}
 
-			vertical_wall_placement_locations.put(new Coordinate_Pair(row, col), true);
+	/**
+	 * Label correcting pass from the given cells until no neighbor can be improved.
+	 * The cells are copied into a circular work list, the array is reused as scratch.
+	 */
+	private void relax(int base, int[] cells, int count){
+		mark_stamp++;
+		int[] work = scratch_next;
+		int head = 0, size = 0;
+		for(int i = 0; i < count; i++){
+			work[size++] = cells[i];
+			scratch_mark[cells[i]] = mark_stamp;
+		}
+		while(size > 0){
+			int x = work[head];
+			head = (head + 1) % CELLS;
+			size--;
+			scratch_mark[x] = 0;
+			int next = goal_distance[base + x] + 1;
+			if(next > UNREACHABLE)
+				continue;
+			for(int dir = UP; dir <= RIGHT; dir++){
+				int y = x + STEP[dir];
+				if(is_open(x, dir) && next < goal_distance[base + y]){
+					goal_distance[base + y] = (byte)next;
+					if(scratch_mark[y] != mark_stamp){
+						scratch_mark[y] = mark_stamp;
+						work[(head + size) % CELLS] = y;
+						size++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Is there still a path from the player's pawn to its goal along which the goal
+	 * distance drops by one each step. Walls only make distances longer, so if there is
+	 * the pawn's distance did not change.
+	 */
+	private boolean keeps_pawn_distance(int player){
+		int base = player * CELLS;
+		allocate_scratch();
+		mark_stamp++;
+		int size = 0;
+		scratch_queue[size++] = player_location[player];
+		scratch_mark[player_location[player]] = mark_stamp;
+		while(size > 0){
+			int x = scratch_queue[--size];
+			int d = goal_distance[base + x];
+			if(d == 0)
+				return true;
+			for(int dir = UP; dir <= RIGHT; dir++){
+				int y = x + STEP[dir];
+				if(is_open(x, dir) && goal_distance[base + y] == d - 1 && scratch_mark[y] != mark_stamp){
+					scratch_mark[y] = mark_stamp;
+					scratch_queue[size++] = y;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The cells on the player's shortest paths from its pawn to its goal, ignoring pawns.
+	 * 
+	 * @param p
+	 * @param cells - receives the cells as a bit set over row * 9 + col, cells 0-63 in
+	 *                cells[0] and the rest in cells[1]
+	 */
+	public void get_shortest_path_cells(Player_ID p, long[] cells){
+		int player = p.ordinal();
+		int base = player * CELLS;
+		cells[0] = cells[1] = 0;
+		if(goal_distance[base + player_location[player]] == UNREACHABLE)
+			return;
+		allocate_scratch();
+		mark_stamp++;
+		int size = 0;
+		scratch_queue[size++] = player_location[player];
+		scratch_mark[player_location[player]] = mark_stamp;
+		while(size > 0){
+			int x = scratch_queue[--size];
+			cells[x >> 6] |= 1L << x;
+			int d = goal_distance[base + x];
+			for(int dir = UP; dir <= RIGHT; dir++){
+				int y = x + STEP[dir];
+				if(is_open(x, dir) && goal_distance[base + y] == d - 1 && scratch_mark[y] != mark_stamp){
+					scratch_mark[y] = mark_stamp;
+					scratch_queue[size++] = y;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Breadth first search from the player's pawn to its goal, ignoring pawns.
+	 */
+	private int search_pawn_distance(int player){
+		allocate_scratch();
+		mark_stamp++;
+		int[] distance = scratch_next;
+		int start = player_location[player];
+		int head = 0, tail = 0;
+		scratch_queue[tail++] = start;
+		scratch_mark[start] = mark_stamp;
+		distance[start] = 0;
+		while(head < tail){
+			int x = scratch_queue[head++];
+			if(is_goal(player, x))
+				return distance[x];
+			for(int dir = UP; dir <= RIGHT; dir++){
+				int y = x + STEP[dir];
+				if(is_open(x, dir) && scratch_mark[y] != mark_stamp){
+					scratch_mark[y] = mark_stamp;
+					distance[y] = distance[x] + 1;
+					scratch_queue[tail++] = y;
+				}
+			}
+		}
+		return UNREACHABLE;
+	}
+
+	/**
+	 * Does the far end of a blocked step still have another shortest step to the goal.
+	 * If it does for both steps a wall blocks, none of the player's distances change.
+	 */
+	private boolean keeps_goal_distances(int player, int row, int col, boolean horizontal){
+		int a1, a2, b1, b2; // the two blocked steps
+		if(horizontal){
+			a1 = cell(row-1, col);
+			b1 = a1 + 1;
+			a2 = a1 + BOARD_SIZE;
+			b2 = b1 + BOARD_SIZE;
+		}
+		else{
+			a1 = cell(row, col-1);
+			b1 = a1 + BOARD_SIZE;
+			a2 = a1 + 1;
+			b2 = b1 + 1;
+		}
+		int base = player * CELLS;
+		allocate_scratch();
+		mark_stamp++;
+		if(goal_distance[base + a1] != goal_distance[base + a2] &&
+				!has_support(base, goal_distance[base + a1] > goal_distance[base + a2] ? a1 : a2))
+			return false;
+		if(goal_distance[base + b1] != goal_distance[base + b2] &&
+				!has_support(base, goal_distance[base + b1] > goal_distance[base + b2] ? b1 : b2))
+			return false;
+		return true;
+	}
+
+	private static int point(int row, int col){
+		return row * (BOARD_SIZE + 1) + col;
+	}
+
+	private static int find(int[] parent, int x){
+		while(parent[x] != x){
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	}
+
+	private static void union(int[] parent, int x, int y){
+		parent[find(parent, x)] = find(parent, y);
+	}
+
+	/**
+	 * Labels the cell corners with their component in the graph formed by the placed
+	 * walls, every corner on the edge of the board is in the same component.
+	 */
+	private void compute_wall_components(){
+		if(wall_component == null)
+			wall_component = new int[POINTS];
+		int[] parent = wall_component;
+		for(int r = 0; r <= BOARD_SIZE; r++){
+			for(int c = 0; c <= BOARD_SIZE; c++){
+				boolean edge = r == 0 || c == 0 || r == BOARD_SIZE || c == BOARD_SIZE;
+				parent[point(r, c)] = edge ? 0 : point(r, c);
+			}
+		}
+		for(long w = horizontal_walls; w != 0; w &= w - 1){
+			int slot = Long.numberOfTrailingZeros(w);
+			int start = point(slot / (BOARD_SIZE-1) + 1, slot % (BOARD_SIZE-1));
+			union(parent, start, start + 1);
+			union(parent, start + 1, start + 2);
+		}
+		for(long w = vertical_walls; w != 0; w &= w - 1){
+			int slot = Long.numberOfTrailingZeros(w);
+			int start = point(slot / (BOARD_SIZE-1), slot % (BOARD_SIZE-1) + 1);
+			union(parent, start, start + BOARD_SIZE + 1);
+			union(parent, start + BOARD_SIZE + 1, start + 2 * (BOARD_SIZE + 1));
+		}
+		for(int p = 0; p < POINTS; p++){
+			parent[p] = find(parent, p);
+		}
+		wall_components_valid = true;
+	}
+
+	/**
+	 * Would the wall close a loop of walls and board edge. The cells are the faces of the
+	 * wall graph, so a wall that does not close a loop cannot split them and every player
+	 * keeps a path to its goal.
+	 */
+	private boolean closes_loop(int row, int col, boolean horizontal){
+		if(!wall_components_valid)
+			compute_wall_components();
+		int start = point(row, col);
+		int step = horizontal ? 1 : BOARD_SIZE + 1;
+		int s = wall_component[start];
+		int m = wall_component[start + step];
+		int e = wall_component[start + 2 * step];
+		return s == m || m == e || s == e;
+	}
+
+	/**
+	 * Shortest path distance, ignoring pawns, from the cell to the player's goal.
+	 *
+	 * @return the number of steps, or Byte.MAX_VALUE if the goal cannot be reached
+	 */
+	public int get_goal_distance(Player_ID p, int row, int col){
+		return goal_distance[p.ordinal() * CELLS + cell(row, col)];
+	}
+
+	private void set_wall_count(int player, int count){
+		zobrist_key ^= wall_count_key(player, walls[player]) ^ wall_count_key(player, count);
+		walls[player] = count;
+	}
+
+	private void set_to_move(int player){
+		zobrist_key ^= SIDE_TO_MOVE_KEYS[to_move] ^ SIDE_TO_MOVE_KEYS[player];
+		to_move = player;
+	}
+
+	// wall counts outside the normal range only come from illegal moves, they do not
+	// change the key
+	private static long wall_count_key(int player, int count){
+		if(count < 0 || count > INITIAL_WALLS)
+			return 0;
+		return WALL_COUNT_KEYS[player][count];
+	}
+
+	/**
+	 * Computes the Zobrist key of the position from scratch.
+	 */
+	private long compute_zobrist_key(){
+		long key = SIDE_TO_MOVE_KEYS[to_move];
+		for(int p = 0; p < 4; p++){
+			key ^= PAWN_KEYS[p][player_location[p]];
+			key ^= wall_count_key(p, walls[p]);
+		}
+		for(long w = horizontal_walls; w != 0; w &= w - 1)
+			key ^= HORIZONTAL_WALL_KEYS[Long.numberOfTrailingZeros(w)];
+		for(long w = vertical_walls; w != 0; w &= w - 1)
+			key ^= VERTICAL_WALL_KEYS[Long.numberOfTrailingZeros(w)];
+		return key;
+	}
+
+	/**
+	 * A 64 bit Zobrist key of the position, covering the pawn locations, the placed walls,
+	 * the remaining wall counts and the side to move. It is updated incrementally as moves
+	 * are applied and undone, two boards with the same position have the same key.
+	 *
+	 * @return the position key
+	 */
+	public long get_zobrist_key(){
+		return zobrist_key;
+	}
+
+	/**
+	 * The Zobrist key of the position turned by the given number of quarter turns, as
+	 * copy_rotated would build it, without building it.
+	 * 
+	 * A quarter turn takes cell (row, col) to (col, 8 - row), so every start cell and
+	 * goal side goes to the next player's and player p becomes player p + 1. The turn
+	 * order is kept, so the turned position is the same game with the players
+	 * relabelled, up to one rule: can_move_to tries a diagonal step past the pawn above
+	 * or below before the pawn at the side, and does not try the side one when the first
+	 * could be jumped straight over. A pawn next to two others may then have different
+	 * diagonal steps once turned. The
+	 * reflections of the board reverse the turn order and are not symmetries of the four
+	 * player game.
+	 * 
+	 * @param rotation - quarter turns, 0 to 3
+	 * @return the key
+	 */
+	public long get_rotated_key(int rotation){
+		int k = rotation & 3;
+		if(k == 0)
+			return zobrist_key;
+		long key = SIDE_TO_MOVE_KEYS[(to_move + k) & 3];
+		for(int p = 0; p < 4; p++){
+			int q = (p + k) & 3;
+			key ^= PAWN_KEYS[q][ROTATED_CELLS[k][player_location[p]]] ^ wall_count_key(q, walls[p]);
+		}
+		for(long w = horizontal_walls; w != 0; w &= w - 1)
+			key ^= rotated_wall_key(ROTATED_HORIZONTAL[k][Long.numberOfTrailingZeros(w)]);
+		for(long w = vertical_walls; w != 0; w &= w - 1)
+			key ^= rotated_wall_key(ROTATED_VERTICAL[k][Long.numberOfTrailingZeros(w)]);
+		return key;
+	}
+
+	private static long rotated_wall_key(int rotated){
+		if((rotated & ROTATED_TO_HORIZONTAL) != 0)
+			return HORIZONTAL_WALL_KEYS[rotated & 63];
+		return VERTICAL_WALL_KEYS[rotated & 63];
+	}
+
+	/**
+	 * The rotation taking the position to its canonical form, the one of the four
+	 * turned positions with the smallest key. Positions that are turns of each other
+	 * have the same canonical form.
+	 * 
+	 * @return quarter turns, 0 to 3
+	 */
+	public int get_canonical_rotation(){
+		int best = 0;
+		long best_key = zobrist_key;
+		for(int k = 1; k < 4; k++){
+			long key = get_rotated_key(k);
+			if(key < best_key){
+				best_key = key;
+				best = k;
+			}
 		}
+		return best;
+	}
+
+	/**
+	 * The key of the canonical form, the same for positions that are turns of each
+	 * other. Stored moves are turned with rotate_move(m, get_canonical_rotation()) and
+	 * turned back with unrotate_move. The turned positions may differ in diagonal steps,
+	 * see get_rotated_key, so a move looked up by the key must be checked on the board
+	 * it is played on, as apply_move does.
+	 */
+	public long get_canonical_key(){
+		return get_rotated_key(get_canonical_rotation());
+	}
+
+	/**
+	 * Turns a packed move with its position, the player is relabelled.
+	 * 
+	 * @param packed
+	 * @param rotation - quarter turns, 0 to 3
+	 * @return the packed move in the turned position
+	 */
+	public static int rotate_move(int packed, int rotation){
+		int row = Move.packed_row(packed);
+		int col = Move.packed_col(packed);
+		boolean wall = Move.packed_is_wall(packed);
+		boolean horizontal = Move.packed_is_horizontal(packed);
+		for(int i = 0; i < (rotation & 3); i++){
+			int r = row;
+			row = col;
+			// a horizontal wall below row r - 1 becomes a vertical wall right of column
+			// 8 - r, a vertical wall right of column c - 1 a horizontal wall below row c - 1
+			if(!wall)
+				col = BOARD_SIZE - 1 - r;
+			else if(horizontal)
+				col = BOARD_SIZE - r;
+			else
+				col = BOARD_SIZE - 2 - r;
+			horizontal = wall && !horizontal;
+		}
+		MOVE_TYPE type = wall ? MOVE_TYPE.PLACE_WALL : MOVE_TYPE.MOVE_PAWN;
+		return Move.pack(type, PLAYER_IDS[(Move.packed_player(packed).ordinal() + rotation) & 3], row, col, horizontal);
+	}
+
+	/**
+	 * Takes a move of the turned position back to the original, the inverse of
+	 * rotate_move.
+	 */
+	public static int unrotate_move(int packed, int rotation){
+		return rotate_move(packed, (4 - (rotation & 3)) & 3);
+	}
+
+	/**
+	 * Makes this board the position of another turned by the given quarter turns, see
+	 * get_rotated_key. The distance maps are turned rather than computed and the undo
+	 * history is cleared. The pawn moves of the copy are those of the turned cells
+	 * except for the diagonal steps get_rotated_key describes.
+	 * 
+	 * @param b - another board
+	 * @param rotation - quarter turns, 0 to 3
+	 */
+	public void copy_rotated(Board b, int rotation){
+		int k = rotation & 3;
+		occupied_low = occupied_high = 0;
+		for(int p = 0; p < 4; p++){
+			int q = (p + k) & 3;
+			walls[q] = b.walls[p];
+			player_location[q] = ROTATED_CELLS[k][b.player_location[p]];
+			toggle_occupied(player_location[q]);
+			for(int c = 0; c < CELLS; c++)
+				goal_distance[q * CELLS + ROTATED_CELLS[k][c]] = b.goal_distance[p * CELLS + c];
+		}
+		horizontal_walls = vertical_walls = 0;
+		for(long w = b.horizontal_walls; w != 0; w &= w - 1)
+			add_rotated_wall(ROTATED_HORIZONTAL[k][Long.numberOfTrailingZeros(w)]);
+		for(long w = b.vertical_walls; w != 0; w &= w - 1)
+			add_rotated_wall(ROTATED_VERTICAL[k][Long.numberOfTrailingZeros(w)]);
+		to_move = (b.to_move + k) & 3;
+		zobrist_key = compute_zobrist_key();
+		// the known paths are found again when needed
+		Arrays.fill(path_length, 0);
+		Arrays.fill(path_set, 0);
+		wall_components_valid = false;
+		history_size = redo_size = 0;
+		path_hits = path_misses = 0;
+	}
+
+	private void add_rotated_wall(int rotated){
+		if((rotated & ROTATED_TO_HORIZONTAL) != 0)
+			horizontal_walls |= 1L << (rotated & 63);
+		else
+			vertical_walls |= 1L << (rotated & 63);
+	}
+
+	/**
+	 * The player whose turn it is, i.e. the player after the last one to apply a move.
+	 */
+	public Player_ID get_player_to_move(){
+		return Player_ID.values()[to_move];
 	}
 	
 	/**
@@ -144,12 +1006,12 @@ public class Board {
 		}
 		
 		//cannot move to an occupied cell, no matter where it is
-		if(board.get_cell(to_row, to_col).get_data() != Cell_Status.FREE){
+		if(is_occupied(to_row, to_col)){
 			return false;
 		}
 		
 		//is the move legal? is the destination one of 4 neighbors
-		if(board.get_cell(from_row, from_col).get_neighbors().contains(board.get_cell(to_row, to_col))){
+		if(are_cells_neighbors(from_row, from_col, to_row, to_col)){
 			return true;
 		}
 		
@@ -157,9 +1019,9 @@ public class Board {
 		//jump up
 		if(to_row == from_row - 2 && to_col == from_col){
 			//player must be directly above
-			if(!(board.get_cell(from_row - 1, from_col).get_data() == Cell_Status.FREE)){
+			if(is_occupied(from_row - 1, from_col)){
 				//and a wall must not be blocking the jump
-				if(board.are_cells_neighbors(from_row, from_col, from_row-1, from_col) && can_move_to(from_row-1, from_col, from_row-2, from_col)){
+				if(are_cells_neighbors(from_row, from_col, from_row-1, from_col) && can_move_to(from_row-1, from_col, from_row-2, from_col)){
 					return true;
 				}
 			}
@@ -167,9 +1029,9 @@ public class Board {
 		//jump down
 		else if(to_row == from_row + 2 && to_col == from_col){
 			//player must be directly below
-			if(!(board.get_cell(from_row + 1, from_col).get_data() == Cell_Status.FREE)){
+			if(is_occupied(from_row + 1, from_col)){
 				//and a wall must not be blocking the jump
-				if(board.are_cells_neighbors(from_row, from_col, from_row+1, from_col) && can_move_to(from_row+1, from_col, from_row+2, from_col)){
+				if(are_cells_neighbors(from_row, from_col, from_row+1, from_col) && can_move_to(from_row+1, from_col, from_row+2, from_col)){
 					return true;
 				}
 			}
@@ -177,9 +1039,9 @@ public class Board {
 		//jump left
 		else if(to_row == from_row && to_col == from_col-2){
 			//player must be directly below
-			if(!(board.get_cell(from_row, from_col - 1).get_data() == Cell_Status.FREE)){
+			if(is_occupied(from_row, from_col - 1)){
 				//and a wall must not be blocking the jump
-				if(board.are_cells_neighbors(from_row, from_col, from_row, from_col-1) && can_move_to(from_row, from_col-1, from_row, from_col-2)){
+				if(are_cells_neighbors(from_row, from_col, from_row, from_col-1) && can_move_to(from_row, from_col-1, from_row, from_col-2)){
 					return true;
 				}
 			}
@@ -187,9 +1049,9 @@ public class Board {
 		//jump right
 		else if(to_row == from_row && to_col == from_col+2){
 			//player must be directly below
-			if(!(board.get_cell(from_row, from_col + 1).get_data() == Cell_Status.FREE)){
+			if(is_occupied(from_row, from_col + 1)){
 				//and a wall must not be blocking the jump
-				if(board.are_cells_neighbors(from_row, from_col, from_row, from_col+1) && can_move_to(from_row, from_col+1, from_row, from_col+2)){
+				if(are_cells_neighbors(from_row, from_col, from_row, from_col+1) && can_move_to(from_row, from_col+1, from_row, from_col+2)){
 					return true;
 				}
 			}
@@ -200,15 +1062,15 @@ public class Board {
 		if(to_row == from_row - 1 && to_col == from_col - 1){
 			//player must be directly above or left of from location AND
 			//there must not be a wall between jumped pawn and the destination
-			if(!(board.get_cell(from_row - 1, from_col).get_data() == Cell_Status.FREE) && 
-					can_move_to(from_row-1, from_col, to_row, to_col) && board.are_cells_neighbors(from_row, from_col, from_row-1, from_col)){
+			if(is_occupied(from_row - 1, from_col) &&
+					can_move_to(from_row-1, from_col, to_row, to_col) && are_cells_neighbors(from_row, from_col, from_row-1, from_col)){
 				//and straight jump must not be possible
 				if(!(can_move_to(from_row-1, from_col, from_row-2, from_col))){
 					return true;
 				}
 			}
-			else if(!(board.get_cell(from_row, from_col-1).get_data() == Cell_Status.FREE) &&
-					can_move_to(from_row, from_col-1, to_row, to_col) && board.are_cells_neighbors(from_row, from_col, from_row, from_col-1)){
+			else if(is_occupied(from_row, from_col-1) &&
+					can_move_to(from_row, from_col-1, to_row, to_col) && are_cells_neighbors(from_row, from_col, from_row, from_col-1)){
 				//and straight jump must not be possible
 				if(!(can_move_to(from_row, from_col-1, from_row, from_col-2))){
 					return true;
@@ -218,15 +1080,15 @@ public class Board {
 		//upper right
 		else if(to_row == from_row - 1 && to_col == from_col + 1){
 			//player must be directly above or right of from location
-			if(!(board.get_cell(from_row - 1, from_col).get_data() == Cell_Status.FREE) &&
-					can_move_to(from_row-1, from_col, to_row, to_col) && board.are_cells_neighbors(from_row, from_col, from_row-1, from_col)){
+			if(is_occupied(from_row - 1, from_col) &&
+					can_move_to(from_row-1, from_col, to_row, to_col) && are_cells_neighbors(from_row, from_col, from_row-1, from_col)){
 				//and straight jump must not be possible
 				if(!(can_move_to(from_row-1, from_col, from_row-2, from_col))){
 					return true;
 				}
 			}
-			else if(!(board.get_cell(from_row, from_col+1).get_data() == Cell_Status.FREE) && 
-					can_move_to(from_row, from_col+1, to_row, to_col) && board.are_cells_neighbors(from_row, from_col, from_row, from_col+1)){
+			else if(is_occupied(from_row, from_col+1) &&
+					can_move_to(from_row, from_col+1, to_row, to_col) && are_cells_neighbors(from_row, from_col, from_row, from_col+1)){
 				//and straight jump must not be possible
 				if(!(can_move_to(from_row, from_col+1, from_row, from_col+2))){
 					return true;
@@ -236,15 +1098,15 @@ public class Board {
 		//lower left 
 		else if(to_row == from_row + 1 && to_col == from_col - 1){
 			//player must be directly below or left of from location
-			if(!(board.get_cell(from_row + 1, from_col).get_data() == Cell_Status.FREE) && 
-					can_move_to(from_row+1, from_col, to_row, to_col) && board.are_cells_neighbors(from_row, from_col, from_row+1, from_col)){
+			if(is_occupied(from_row + 1, from_col) &&
+					can_move_to(from_row+1, from_col, to_row, to_col) && are_cells_neighbors(from_row, from_col, from_row+1, from_col)){
 				//and straight jump must not be possible
 				if(!(can_move_to(from_row+1, from_col, from_row+2, from_col))){
 					return true;
 				}
 			}
-			else if(!(board.get_cell(from_row, from_col-1).get_data() == Cell_Status.FREE) &&
-					can_move_to(from_row, from_col-1, to_row, to_col) && board.are_cells_neighbors(from_row, from_col, from_row, from_col-1)){
+			else if(is_occupied(from_row, from_col-1) &&
+					can_move_to(from_row, from_col-1, to_row, to_col) && are_cells_neighbors(from_row, from_col, from_row, from_col-1)){
 				//and straight jump must not be possible
 				if(!(can_move_to(from_row, from_col-1, from_row, from_col-2))){
 					return true;
@@ -254,269 +1116,294 @@ public class Board {
 		//lower right
 		else if(to_row == from_row + 1 && to_col == from_col + 1){
 			//player must be directly below or right of from location
-			if(!(board.get_cell(from_row + 1, from_col).get_data() == Cell_Status.FREE) && 
-					can_move_to(from_row+1, from_col, to_row, to_col) && board.are_cells_neighbors(from_row, from_col, from_row+1, from_col)){
+			if(is_occupied(from_row + 1, from_col) &&
+					can_move_to(from_row+1, from_col, to_row, to_col) && are_cells_neighbors(from_row, from_col, from_row+1, from_col)){
 				//and straight jump must not be possible
 				if(!(can_move_to(from_row+1, from_col, from_row+2, from_col))){
 					return true;
 				}
 			}
-			else if(!(board.get_cell(from_row, from_col+1).get_data() == Cell_Status.FREE) && 
-			can_move_to(from_row, from_col+1, to_row, to_col) && board.are_cells_neighbors(from_row, from_col, from_row, from_col+1)){
+			else if(is_occupied(from_row, from_col+1) &&
+			can_move_to(from_row, from_col+1, to_row, to_col) && are_cells_neighbors(from_row, from_col, from_row, from_col+1)){
 				//and straight jump must not be possible
-				if(!(can_move_to(from_row, from_col+1, from_row, from_col+2))){
-					return true;
-				}
-			}
-		}
-		
-		return false;
-	}
-	
-	/**
-	 * A pair of accessors for the wall locations maps.
-	 */
-	public HashMap<Coordinate_Pair, Boolean> getHorizontal_wall_placement_locations() {
-		return horizontal_wall_placement_locations;
-	}
-
-	public HashMap<Coordinate_Pair, Boolean> getVertical_wall_placement_locations() {
-		return vertical_wall_placement_locations;
-	}
-
-	private void remove_players() {
-		board.get_cell(player_location[0].get_y_coordinate(), player_location[0].get_x_coordinate()).set_data(Cell_Status.FREE);
-		board.get_cell(player_location[1].get_y_coordinate(), player_location[1].get_x_coordinate()).set_data(Cell_Status.FREE);
-		board.get_cell(player_location[2].get_y_coordinate(), player_location[2].get_x_coordinate()).set_data(Cell_Status.FREE);
-		board.get_cell(player_location[3].get_y_coordinate(), player_location[3].get_x_coordinate()).set_data(Cell_Status.FREE);
-	}
-
-	private void replace_players() {
-		board.get_cell(player_location[0].get_y_coordinate(), player_location[0].get_x_coordinate()).set_data(Cell_Status.P1);
-		board.get_cell(player_location[1].get_y_coordinate(), player_location[1].get_x_coordinate()).set_data(Cell_Status.P2);
-		board.get_cell(player_location[2].get_y_coordinate(), player_location[2].get_x_coordinate()).set_data(Cell_Status.P3);
-		board.get_cell(player_location[3].get_y_coordinate(), player_location[3].get_x_coordinate()).set_data(Cell_Status.P4);
-	}
-
-// Copied from http://code.google.com/p/a-star/source/browse/trunk/java/AStar.java?r=8
-	private class Path implements Comparable{
-		// Path for A* search
-
-		public Coordinate_Pair point;
-		public int f;
-		public int g;
-		public Path parent;
-
-		public Path(){
-			parent = null;
-			point = null;
-			g = f = 0;
-		}
-
-		public Path(Coordinate_Pair p, int m_g, int m_f){
-			parent = null;
-			point = p;
-			g = m_g;
-			f = m_f;
+				if(!(can_move_to(from_row, from_col+1, from_row, from_col+2))){
+					return true;
+				}
+			}
 		}
-
-		// Abuse of copy constructor
-		public Path(Path p) {
-			this();
-			parent = p;
-			g = p.g;
-			f = p.f;
+		
+		return false;
+	}
+	
+	/**
+	 * A pair of accessors for the wall locations. The maps are built from the wall
+	 * bitboards on every call, changing them does not change the board.
+	 */
+	public HashMap<Coordinate_Pair, Boolean> getHorizontal_wall_placement_locations() {
+		HashMap<Coordinate_Pair, Boolean> locations = new HashMap<Coordinate_Pair, Boolean>();
+		for(long w = horizontal_walls; w != 0; w &= w - 1){
+			int slot = Long.numberOfTrailingZeros(w);
+			locations.put(COORDINATES[cell(slot / (BOARD_SIZE-1) + 1, slot % (BOARD_SIZE-1))], true);
 		}
+		return locations;
+	}
 
-		// return less than 0 if this object is smaller than o
-		// greater than 0 if this object is bigger
-		public int compareTo( Object o){ 
-			Path p = (Path) o;
-			return (int) (f - p.f);
+	public HashMap<Coordinate_Pair, Boolean> getVertical_wall_placement_locations() {
+		HashMap<Coordinate_Pair, Boolean> locations = new HashMap<Coordinate_Pair, Boolean>();
+		for(long w = vertical_walls; w != 0; w &= w - 1){
+			int slot = Long.numberOfTrailingZeros(w);
+			locations.put(COORDINATES[cell(slot / (BOARD_SIZE-1), slot % (BOARD_SIZE-1) + 1)], true);
 		}
+		return locations;
 	}
 
 	// Get moves that involve just one step, (i.e. no jumps
 	// Assume this position is a valid one
 	public Coordinate_Pair[] one_moves_from( Coordinate_Pair p ) {
-
-		Cell<Cell_Status> n_pair; // pulling out neighbors.get call give 6.6% increase to evals/sec
-		Vector<Cell<Cell_Status>> neighbors = board.get_cell(p.row(), p.col()).get_neighbors();
-		Coordinate_Pair res[] = new Coordinate_Pair[neighbors.size()];
-		for( int i = 0 ; i < neighbors.size(); i++ ) {
-			n_pair = neighbors.get(i);
-			res[i] = new Coordinate_Pair( n_pair.get_row(), n_pair.get_col() );
+		int from = cell(p.row(), p.col());
+		int count = 0;
+		for(int dir = UP; dir <= RIGHT; dir++){
+			if(is_open(from, dir))
+				count++;
+		}
+		Coordinate_Pair res[] = new Coordinate_Pair[count];
+		count = 0;
+		for(int dir = UP; dir <= RIGHT; dir++){
+			if(is_open(from, dir))
+				res[count++] = COORDINATES[from + STEP[dir]];
 		}
 		return res;
 	}
 
-	public boolean is_valid_path( Path path ) {
-		Path p = path;
-		Cell<Cell_Status> n_pair; // pulling out neighbors.get call give theoritcal incresse in perfomacne
-		// While we aren't at the end of the path
-		while ( p.parent != null ) {
-			// path is blocked
-			Vector<Cell<Cell_Status>> neighbors = board.get_cell(p.point.row(), p.point.col()).get_neighbors();
-			boolean found_parent = false;
-			for( int i = 0 ; i < neighbors.size(); i++ ) {
-				n_pair = neighbors.get(i);
-				if( n_pair.get_row() == p.parent.point.row() && n_pair.get_col() == p.parent.point.col() )
-				{
-					found_parent = true;
-					break;
-				}
-			} // if we didn't find the parent we have failed the path is invalid
-			if ( ! found_parent ){
-				return false;
-			}
-			// go up path
-			p = p.parent;
+	/**
+	 * Does the player have a path to its goal with the walls as they are, for
+	 * can_place_wall while the wall being checked is in place. The player's known path
+	 * answers it when the wall does not cut a step of it, an O(1) test against its
+	 * bitset. A cut path is repaired around the cut and a missing one is searched for,
+	 * the new path stays valid once the wall is taken away.
+	 */
+	private boolean has_goal_path(int player, int row, int col, boolean horizontal){
+		// the wall blocks the steps a-a+step and b-b+step
+		int a = horizontal ? cell(row - 1, col) : cell(row, col - 1);
+		int b = a + (horizontal ? 1 : BOARD_SIZE);
+		int step = horizontal ? BOARD_SIZE : 1;
+		if(path_length[player] > 0 && !path_stale[player] &&
+				!may_cut_path(player, a, a + step) && !may_cut_path(player, b, b + step)){
+			path_hits++;
+			return true;
 		}
-		// Got trough whole path
-		return true;
-	}
-
-	private boolean path_exists(Player_ID player, int target, boolean row){
-		// Check cached path first
-		if (cached_path[player.ordinal() ] != null ) {
-			if( is_valid_path( cached_path[player.ordinal() ] ) )
-			{
-				cache_hit ++;
-				return true;
-			}
+		int low = path_length[player] > 0 ? first_blocked_step(player) : -1;
+		if(path_length[player] > 0 && low < 0){
+			// only cells beside each other were blocked, not a step of the path
+			path_stale[player] = false;
+			path_hits++;
+			return true;
 		}
-		cache_miss ++;
-
-		Path p = a_star( player_location[player.ordinal()], target, row);
-		if ( p != null ) { // good path
-			if (cached_path[player.ordinal() ] == null) { // only update if bad path;
-				cached_path[player.ordinal() ] = p;
-			}
+		path_misses++;
+		if(path_length[player] > 0 && repair_path(player, low))
 			return true;
-		} else 
-			return false;
+		return find_goal_path(player);
 	}
 
-
 	/**
-	 * Does a path exist from the provided board location to the specified row.
-	 * 
-	 * @param from_row
-	 * @param from_col
-	 * @param to_row
-	 * @return
+	 * The has_goal_path queries answered by the known paths since the board was made or
+	 * copied.
 	 */
-	private boolean path_exists_to_row(Player_ID player, int to_row){
-		return path_exists( player, to_row, true );
+	public int get_path_cache_hits(){
+		return path_hits;
 	}
 
 	/**
-	 * Does a path exist from the provided board location to the specified column.
-	 * 
-	 * @param from_row
-	 * @param from_col
-	 * @param to_col
-	 * @return
+	 * The has_goal_path queries that repaired or searched for a path.
 	 */
-	private boolean path_exists_to_column(Player_ID player, int to_col){
-		return path_exists( player, to_col, false );
+	public int get_path_cache_misses(){
+		return path_misses;
 	}
 
+	// are both cells on the player's known path, so blocking the step between them may
+	// cut it
+	private boolean may_cut_path(int player, int x, int y){
+		return path_length[player] > 0 && in_path(player, x) && in_path(player, y);
+	}
 
-	// target is the target row or column row is if it is a row or if it is a column
-	private Path a_star(Coordinate_Pair start, int target, boolean row){
-		// blatentlly copied form wikipedia a star
+	private boolean in_path(int player, int x){
+		return (path_set[2 * player + (x >> 6)] & (1L << x)) != 0;
+	}
 
-		HashSet<Coordinate_Pair> closed = new HashSet<Coordinate_Pair>( ); // half the boardish
-		PriorityQueue<Path> open = new PriorityQueue<Path>( );
+	/**
+	 * Index of the first step of the player's known path that a wall blocks, counted
+	 * from the goal, -1 if there is none.
+	 */
+	private int first_blocked_step(int player){
+		int base = player * CELLS;
+		for(int i = 0; i + 1 < path_length[player]; i++){
+			if(!is_open_between(path_steps[base + i], path_steps[base + i + 1]))
+				return i;
+		}
+		return -1;
+	}
 
-		int h_score = 0;
-		if ( row )
-			h_score = Math.abs ( start.row() - target );
-		else
-			h_score = Math.abs ( start.col() - target );
-		// h_score = f_score for first root
-		Path root = new Path( start, 0 , h_score );
-
-		open.add(root );
-
-		while(!open.isEmpty()){
-			// next = x
-			Path next = open.poll();
-			// if next is goal i.e. row/col match up
-			if ( row && next.point.row() - target == 0 || 
-				!row && next.point.col() - target == 0 ){
-				return next;
-			}
+	private boolean is_open_between(int x, int y){
+		int dir = y == x - BOARD_SIZE ? UP : y == x + BOARD_SIZE ? DOWN : y == x - 1 ? LEFT : RIGHT;
+		return is_open(x, dir);
+	}
 
-			// check that the node hasn't already been expanded
-			if ( closed.contains( next.point ) ) {
-				continue;
+	/**
+	 * Keeps the player's known path starting at its pawn as the pawn moves to the cell.
+	 * A cell on the path drops the steps before it, a step off the path is added to it,
+	 * any other move forgets the path.
+	 */
+	private void follow_pawn(int player, int to){
+		int length = path_length[player];
+		if(length == 0)
+			return;
+		int base = player * CELLS;
+		int from = path_steps[base + length - 1];
+		if(in_path(player, to)){
+			while(path_steps[base + length - 1] != to){
+				int x = path_steps[base + --length];
+				path_set[2 * player + (x >> 6)] &= ~(1L << x);
 			}
-			// Add point to closed so we know not to look at it again
-			closed.add( next.point );
-			// For each child i
-			Coordinate_Pair[] child = one_moves_from( next.point );
-			for(int i = 0; i < child.length; i++  ) {
-				if ( closed.contains( child[i]) )
-					continue;
-				// each node is one away from parent
-				int g_score = next.g + 1;
+			path_length[player] = length;
+		}
+		else if(Math.abs(to - from) == BOARD_SIZE || (Math.abs(to - from) == 1 && to / BOARD_SIZE == from / BOARD_SIZE)){
+			if(!is_open_between(from, to)){
+				path_length[player] = 0;
+				return;
+			}
+			path_steps[base + length] = (byte)to;
+			path_length[player] = length + 1;
+			path_set[2 * player + (to >> 6)] |= 1L << to;
+		}
+		else
+			path_length[player] = 0;
+	}
 
-				// Cacluate heurstic
-				if ( row )
-					h_score = Math.abs ( child[i].row() - target );
-				else
-					h_score = Math.abs ( child[i].col() - target );
+	/**
+	 * Replaces the blocked part of the player's known path. A breadth first search from
+	 * the pawn side of the last blocked step, which does not enter the path between it
+	 * and the pawn, reaches either the path before the first blocked step or the goal.
+	 *
+	 * @param low - the first blocked step, see first_blocked_step
+	 * @return false if there is no such detour
+	 */
+	private boolean repair_path(int player, int low){
+		int base = player * CELLS;
+		int length = path_length[player];
+		int high = low;
+		for(int i = low + 1; i + 1 < length; i++){
+			if(!is_open_between(path_steps[base + i], path_steps[base + i + 1]))
+				high = i;
+		}
+		// the goal side cells before the cut are targets, the pawn side ones are kept out
+		allocate_scratch();
+		int target_stamp = ++mark_stamp;
+		int kept_stamp = ++mark_stamp;
+		int seen_stamp = ++mark_stamp;
+		for(int i = 0; i <= low; i++)
+			scratch_mark[path_steps[base + i]] = target_stamp;
+		for(int i = high + 2; i < length; i++)
+			scratch_mark[path_steps[base + i]] = kept_stamp;
+		int start = path_steps[base + high + 1];
+		int end = search_goal_path(player, start, target_stamp, seen_stamp);
+		if(end < 0)
+			return false;
+
+		// the goal side up to the cell reached, the detour back to the start and the
+		// pawn side, the search is done with its queue
+		int[] steps = scratch_queue;
+		int n = 0;
+		if(end != start && scratch_mark[end] == target_stamp){
+			while(path_steps[base + n] != end){
+				steps[n] = path_steps[base + n];
+				n++;
+			}
+		}
+		for(int x = end; x != start; x = scratch_next[x])
+			steps[n++] = x;
+		for(int i = high + 1; i < length; i++)
+			steps[n++] = path_steps[base + i];
+		set_path(player, steps, n);
+		return true;
+	}
 
-				Path p = new Path ( child[i] , g_score , g_score + h_score );
-				p.parent = next ;
+	/**
+	 * Finds a path for the player from its pawn with a breadth first search.
+	 *
+	 * @return false if the goal cannot be reached, no path is known then
+	 */
+	private boolean find_goal_path(int player){
+		allocate_scratch();
+		int none_stamp = ++mark_stamp;
+		int seen_stamp = ++mark_stamp;
+		int start = player_location[player];
+		int end = search_goal_path(player, start, none_stamp, seen_stamp);
+		if(end < 0){
+			path_length[player] = 0;
+			return false;
+		}
+		int[] steps = scratch_queue;
+		int n = 0;
+		for(int x = end; x != start; x = scratch_next[x])
+			steps[n++] = x;
+		steps[n++] = start;
+		set_path(player, steps, n);
+		return true;
+	}
 
-				// we found the the goal we can return now because
-				// all path costs are the same
-				// 4% increase in speed
-				if (h_score == 0 )
-					return p;
-				open.add ( p );  // the same node can go in more than once
+	/**
+	 * Breadth first search from the cell to the player's goal or a cell marked with the
+	 * target stamp. Cells marked with any later stamp are not entered. scratch_next
+	 * holds each reached cell's parent.
+	 * 
+	 * @return the cell reached, -1 if there is none
+	 */
+	private int search_goal_path(int player, int start, int target_stamp, int seen_stamp){
+		if(is_goal(player, start) || scratch_mark[start] == target_stamp)
+			return start;
+		int tail = 0;
+		scratch_queue[tail++] = start;
+		scratch_mark[start] = seen_stamp;
+		for(int head = 0; head < tail; head++){
+			int x = scratch_queue[head];
+			for(int dir = UP; dir <= RIGHT; dir++){
+				if(!is_open(x, dir))
+					continue;
+				int y = x + STEP[dir];
+				int mark = scratch_mark[y];
+				if(mark >= target_stamp && mark != target_stamp)
+					continue;
+				scratch_next[y] = x;
+				if(mark == target_stamp || is_goal(player, y))
+					return y;
+				scratch_mark[y] = seen_stamp;
+				scratch_queue[tail++] = y;
 			}
 		}
-		return null;
-	} // end a star
+		return -1;
+	}
+
+	// makes the cells, goal first, the player's known path
+	private void set_path(int player, int[] steps, int length){
+		int base = player * CELLS;
+		path_set[2 * player] = path_set[2 * player + 1] = 0;
+		for(int i = 0; i < length; i++){
+			path_steps[base + i] = (byte)steps[i];
+			path_set[2 * player + (steps[i] >> 6)] |= 1L << steps[i];
+		}
+		path_length[player] = length;
+		path_stale[player] = false;
+	}
+
 
 	
 	/**
 	 * Computes the shortest path to the goal on the given board for player p
-	 * Returns the shortest path distance.
+	 * Returns the shortest path distance. This is a lookup in the goal distance map,
+	 * which is kept up to date as walls are placed.
 	 */
 	public int shortest_path(Player_ID p){
-		int target = 0;
-		boolean row = true;
-		
-		switch(p){
-			// player 1 trying to reach row BOARD_SIZE -1
-			case PLAYER_1:
-				row = true;
-				target = BOARD_SIZE - 1;
-				break;
-			// player 2 trying to reach column 0	
-			case PLAYER_2:
-				row = false;
-				target = 0;
-				break;
-			// player 3 trying to reach row 0
-			case PLAYER_3:
-				row = true;
-				target = 0;
-				break;
-			// player 4 trying to reach column BOARD_SIZE - 1
-			case PLAYER_4:
-				row = false;
-				target = BOARD_SIZE - 1;
-				break;
-		}
-		Path path = a_star( player_location[p.ordinal()], target, row );
-		// the f value for the goal node should be 100% accurate
-		return path.f;
+		return goal_distance[p.ordinal() * CELLS + player_location[p.ordinal()]];
 	}
 	
 	/**
@@ -540,27 +1427,25 @@ public class Board {
 		
 		//cannot place a wall overlapping an existing wall
 		if(place_horizontally){
-			if(!(board.get_cell(row, col).get_neighbors().contains(board.get_cell(row-1, col)) && 
-					board.get_cell(row, col+1).get_neighbors().contains(board.get_cell(row-1, col+1)))){
+			if(!(is_open(cell(row, col), UP) && is_open(cell(row, col+1), UP))){
 				return false;	
 			}
 		}
 		else{
-			if(!(board.get_cell(row, col).get_neighbors().contains(board.get_cell(row, col-1)) && 
-					board.get_cell(row+1, col).get_neighbors().contains(board.get_cell(row+1, col-1)))){
+			if(!(is_open(cell(row, col), LEFT) && is_open(cell(row+1, col), LEFT))){
 				return false;	
 			}
 		}
 		
 		//will the wall intersect another wall
 		if(place_horizontally){
-			if(vertical_wall_placement_locations.get(new Coordinate_Pair(row - 1, col+1)) != null){
+			if((vertical_walls & (1L << vertical_slot(row - 1, col+1))) != 0){
 				//check for a vertical intersecting wall
 				return false;
 			}
 		}
 		else{
-			if(horizontal_wall_placement_locations.get(new Coordinate_Pair(row + 1, col-1)) != null){
+			if((horizontal_walls & (1L << horizontal_slot(row + 1, col-1))) != 0){
 				//check for a horizontal intersecting wall
 				return false;
 			}
@@ -568,20 +1453,21 @@ public class Board {
 		
 		//walls must be within 1 space of another wall or 2 spaces of a pawn
 		boolean is_wall_too_far_from_walls = true;
-		for(Coordinate_Pair wall : horizontal_wall_placement_locations.keySet()){
-			if(distance_between_walls(row, col, place_horizontally, wall.get_y_coordinate(), wall.get_x_coordinate(), true) <= 1){
+		for(long w = horizontal_walls; w != 0 && is_wall_too_far_from_walls; w &= w - 1){
+			int slot = Long.numberOfTrailingZeros(w);
+			if(distance_between_walls(row, col, place_horizontally, slot / (BOARD_SIZE-1) + 1, slot % (BOARD_SIZE-1), true) <= 1){
 				is_wall_too_far_from_walls = false;
 			}
 		}
-		for(Coordinate_Pair wall : vertical_wall_placement_locations.keySet()){
-			if(distance_between_walls(row, col, place_horizontally, wall.get_y_coordinate(), wall.get_x_coordinate(), false) <= 1){
+		for(long w = vertical_walls; w != 0 && is_wall_too_far_from_walls; w &= w - 1){
+			int slot = Long.numberOfTrailingZeros(w);
+			if(distance_between_walls(row, col, place_horizontally, slot / (BOARD_SIZE-1), slot % (BOARD_SIZE-1) + 1, false) <= 1){
 				is_wall_too_far_from_walls = false;
 			}
 		}
 		
 		boolean is_wall_too_far_from_pawns = true;
-		if(distance_between_players_and_wall(row, col, place_horizontally) <= 1){
-			int dist = distance_between_players_and_wall(row, col, place_horizontally);
+		if(is_wall_too_far_from_walls && distance_between_players_and_wall(row, col, place_horizontally) <= 1){
 			is_wall_too_far_from_pawns = false;
 		}
 		
@@ -589,41 +1475,35 @@ public class Board {
 			return false;
 		}
 		
+		//cannot place a wall that leaves a player with 0 paths to its goal, which
+		//needs the wall to close a loop
+		if(!closes_loop(row, col, place_horizontally)){
+			return true;
+		}
+		
 		//temporarily place wall on board
+		long wall_bit;
 		if(place_horizontally){
-			board.get_cell(row, col).get_neighbors().remove(board.get_cell(row-1, col));
-			board.get_cell(row-1, col).get_neighbors().remove(board.get_cell(row, col));
-			board.get_cell(row, col+1).get_neighbors().remove(board.get_cell(row-1, col+1));
-			board.get_cell(row-1, col+1).get_neighbors().remove(board.get_cell(row, col+1));
+			wall_bit = 1L << horizontal_slot(row, col);
+			horizontal_walls |= wall_bit;
 		}
 		else{
-			board.get_cell(row, col).get_neighbors().remove(board.get_cell(row, col-1));
-			board.get_cell(row, col-1).get_neighbors().remove(board.get_cell(row, col));
-			board.get_cell(row+1, col).get_neighbors().remove(board.get_cell(row+1, col-1));
-			board.get_cell(row+1, col-1).get_neighbors().remove(board.get_cell(row+1, col));
+			wall_bit = 1L << vertical_slot(row, col);
+			vertical_walls |= wall_bit;
 		}
 		
-		//cannot place a wall that leaves a player with 0 paths to its goal
-		boolean ret = false;
-		if(path_exists_to_row(Player_ID.PLAYER_1, BOARD_SIZE-1) &&
-				path_exists_to_column(Player_ID.PLAYER_2, 0) &&
-				path_exists_to_row(Player_ID.PLAYER_3, 0) &&
-				path_exists_to_column(Player_ID.PLAYER_4, BOARD_SIZE-1)){
-			ret = true; //all players still have AT LEAST one path with the new wall in place
-		}
+		//a player whose distances do not change still has a path, only check the
+		//others
+		boolean ret = true;
+		for(int p = 0; p < 4 && ret; p++)
+			ret = keeps_goal_distances(p, row, col, place_horizontally) || has_goal_path(p, row, col, place_horizontally);
 		
 		//reset the temporary wall placement
 		if(place_horizontally){
-			board.get_cell(row, col).get_neighbors().add(board.get_cell(row-1, col));
-			board.get_cell(row-1, col).get_neighbors().add(board.get_cell(row, col));
-			board.get_cell(row, col+1).get_neighbors().add(board.get_cell(row-1, col+1));
-			board.get_cell(row-1, col+1).get_neighbors().add(board.get_cell(row, col+1));
+			horizontal_walls &= ~wall_bit;
 		}
 		else{
-			board.get_cell(row, col).get_neighbors().add(board.get_cell(row, col-1));
-			board.get_cell(row, col-1).get_neighbors().add(board.get_cell(row, col));
-			board.get_cell(row+1, col).get_neighbors().add(board.get_cell(row+1, col-1));
-			board.get_cell(row+1, col-1).get_neighbors().add(board.get_cell(row+1, col));
+			vertical_walls &= ~wall_bit;
 		}
 		return ret;
 	}
@@ -649,26 +1529,19 @@ public class Board {
 		
 		
 		int[] point_distances = new int[8];
-		Integer curr_min = Integer.MAX_VALUE; 
-		Coordinate_Pair[] locations = new Coordinate_Pair[]{player_location[0], player_location[1], player_location[2], player_location[3]};
-		for(int i= 0; i < locations.length; i++){
-			point_distances[0] = Math.abs(wall_row - ((Coordinate_Pair)locations[i]).get_y_coordinate()) +
-									Math.abs(wall_col - ((Coordinate_Pair)locations[i]).get_x_coordinate());
-			point_distances[1] = Math.abs(wall_row - ((Coordinate_Pair)locations[i]).get_y_coordinate()) +
-									Math.abs(wall_col - (((Coordinate_Pair)locations[i]).get_x_coordinate()+1));
-			point_distances[2] = Math.abs(wall_row - (((Coordinate_Pair)locations[i]).get_y_coordinate() +1)) +
-									Math.abs(wall_col - (((Coordinate_Pair)locations[i]).get_x_coordinate()+1));
-			point_distances[3] = Math.abs(wall_row - (((Coordinate_Pair)locations[i]).get_y_coordinate()+1)) +
-									Math.abs(wall_col - ((Coordinate_Pair)locations[i]).get_x_coordinate());
-
-			point_distances[4] = Math.abs(wall_end_row - ((Coordinate_Pair)locations[i]).get_y_coordinate()) + 
-									Math.abs(wall_end_col - ((Coordinate_Pair)locations[i]).get_x_coordinate());
-			point_distances[5] = Math.abs(wall_end_row - ((Coordinate_Pair)locations[i]).get_y_coordinate()) + 
-									Math.abs(wall_end_col - (((Coordinate_Pair)locations[i]).get_x_coordinate()+1));
-			point_distances[6] = Math.abs(wall_end_row - (((Coordinate_Pair)locations[i]).get_y_coordinate() +1)) +
-									Math.abs(wall_end_col - (((Coordinate_Pair)locations[i]).get_x_coordinate()+1));
-			point_distances[7] = Math.abs(wall_end_row - (((Coordinate_Pair)locations[i]).get_y_coordinate()+1)) +
-									Math.abs(wall_end_col - ((Coordinate_Pair)locations[i]).get_x_coordinate());
+		int curr_min = Integer.MAX_VALUE;
+		for(int i= 0; i < player_location.length; i++){
+			int pawn_row = player_location[i] / BOARD_SIZE;
+			int pawn_col = player_location[i] % BOARD_SIZE;
+			point_distances[0] = Math.abs(wall_row - pawn_row) + Math.abs(wall_col - pawn_col);
+			point_distances[1] = Math.abs(wall_row - pawn_row) + Math.abs(wall_col - (pawn_col+1));
+			point_distances[2] = Math.abs(wall_row - (pawn_row+1)) + Math.abs(wall_col - (pawn_col+1));
+			point_distances[3] = Math.abs(wall_row - (pawn_row+1)) + Math.abs(wall_col - pawn_col);
+
+			point_distances[4] = Math.abs(wall_end_row - pawn_row) + Math.abs(wall_end_col - pawn_col);
+			point_distances[5] = Math.abs(wall_end_row - pawn_row) + Math.abs(wall_end_col - (pawn_col+1));
+			point_distances[6] = Math.abs(wall_end_row - (pawn_row+1)) + Math.abs(wall_end_col - (pawn_col+1));
+			point_distances[7] = Math.abs(wall_end_row - (pawn_row+1)) + Math.abs(wall_end_col - pawn_col);
 			
 			if(minimum_value(point_distances) < curr_min){
 				curr_min = minimum_value(point_distances);
@@ -758,18 +1631,10 @@ public class Board {
 	private boolean place_wall(int row, int col, boolean place_horizontally){
 		if(can_place_wall(row, col, place_horizontally)){	
 			if(place_horizontally){
-				board.get_cell(row, col).get_neighbors().remove(board.get_cell(row-1, col));
-				board.get_cell(row-1, col).get_neighbors().remove(board.get_cell(row, col));
-				board.get_cell(row, col+1).get_neighbors().remove(board.get_cell(row-1, col+1));
-				board.get_cell(row-1, col+1).get_neighbors().remove(board.get_cell(row, col+1));
-				horizontal_wall_placement_locations.put(new Coordinate_Pair(row, col), true);
+				toggle_wall(horizontal_slot(row, col), true);
 			}
 			else{
-				board.get_cell(row, col).get_neighbors().remove(board.get_cell(row, col-1));
-				board.get_cell(row, col-1).get_neighbors().remove(board.get_cell(row, col));
-				board.get_cell(row+1, col).get_neighbors().remove(board.get_cell(row+1, col-1));
-				board.get_cell(row+1, col-1).get_neighbors().remove(board.get_cell(row+1, col));
-				vertical_wall_placement_locations.put(new Coordinate_Pair(row, col), true);
+				toggle_wall(vertical_slot(row, col), false);
 			}
 			
 			return true; //the wall could was successfully placed in the desired location
@@ -790,29 +1655,7 @@ public class Board {
 	 */
 	private boolean move(int from_row, int from_col, int to_row, int to_col, Player_ID player){
 		if(can_move_to(from_row, from_col, to_row, to_col)){
-			// invalidate the cached path for this player
-			cached_path[player.ordinal()] = null;
-			switch (player) {
-			case PLAYER_1:
-				player_location[0] = new Coordinate_Pair(to_row, to_col);
-				board.get_cell(to_row, to_col).set_data(Cell_Status.P1);
-				break;
-			case PLAYER_2:
-				player_location[1] = new Coordinate_Pair(to_row, to_col);
-				board.get_cell(to_row, to_col).set_data(Cell_Status.P2);
-				break;
-			case PLAYER_3:
-				player_location[2] = new Coordinate_Pair(to_row, to_col);
-				board.get_cell(to_row, to_col).set_data(Cell_Status.P3);
-				break;
-			case PLAYER_4:
-				player_location[3] = new Coordinate_Pair(to_row, to_col);
-				board.get_cell(to_row, to_col).set_data(Cell_Status.P4);
-				break;
-			default:
-				break;
-			}
-			board.get_cell(from_row, from_col).set_data(Cell_Status.FREE);
+			place_pawn(player.ordinal(), to_row, to_col);
 			return true;
 		}
 		
@@ -831,16 +1674,16 @@ public class Board {
 		for(int i = 0; i < BOARD_SIZE; i++){
 			buf.append("*");
 			for(int j = 0; j < BOARD_SIZE; j++){
-				if(board.get_cell(i, j).get_data() == Cell_Status.P1){
+				if(player_location[0] == cell(i, j)){
 					buf.append("1");
 				}
-				else if(board.get_cell(i, j).get_data() == Cell_Status.P2){
+				else if(player_location[1] == cell(i, j)){
 					buf.append("2");
 				}
-				else if(board.get_cell(i, j).get_data() == Cell_Status.P3){
+				else if(player_location[2] == cell(i, j)){
 					buf.append("3");
 				}
-				else if(board.get_cell(i, j).get_data() == Cell_Status.P4){
+				else if(player_location[3] == cell(i, j)){
 					buf.append("4");
 				}
 				else{
@@ -849,7 +1692,7 @@ public class Board {
 				
 				//right neighbor wall check
 				if(j < BOARD_SIZE-1){
-					if(board.get_cell(i, j).get_neighbors().contains(board.get_cell(i, j+1))){
+					if(is_open(cell(i, j), RIGHT)){
 						buf.append("|");
 					}
 					else{
@@ -866,15 +1709,15 @@ public class Board {
 						buf.append("*");
 					else if(j%2 == 0){
 						if(  j <= 2*(BOARD_SIZE-1)
-						  && !board.get_cell(i, j/2-1).get_neighbors().contains(board.get_cell(i, j/2))
-						  || !board.get_cell(i+1, j/2-1).get_neighbors().contains(board.get_cell(i+1, j/2))){
+						  && !is_open(cell(i, j/2-1), RIGHT)
+						  || !is_open(cell(i+1, j/2-1), RIGHT)){
 							buf.append("#");
 						}
 						else
 							buf.append("-");
 					}
 					else{
-						if(board.get_cell(i+1, board_j).get_neighbors().contains(board.get_cell(i, board_j))){
+						if(is_open(cell(i+1, board_j), UP)){
 							buf.append("-");
 						}
 						else {
@@ -903,59 +1746,111 @@ public class Board {
 	 * @return true if the move is applied successfully, false if the move was invalid and not applied
 	 */
 	public boolean apply_move(Move m){
-		if(m.getMove_type() == Move.MOVE_TYPE.MOVE_PAWN){
-			switch(m.getPlayer_making_move()){
-				case PLAYER_1:
-					return move(player_location[0].get_y_coordinate(), player_location[0].get_x_coordinate(), 
-							    m.getTarget_cell_coordinates().get_y_coordinate(), 
-							    m.getTarget_cell_coordinates().get_x_coordinate(), Player_ID.PLAYER_1);
-				
-				case PLAYER_2:
-					return move(player_location[1].get_y_coordinate(), player_location[1].get_x_coordinate(), 
-							    m.getTarget_cell_coordinates().get_y_coordinate(), 
-							    m.getTarget_cell_coordinates().get_x_coordinate(), Player_ID.PLAYER_2);
-				
-				case PLAYER_3:
-					return move(player_location[2].get_y_coordinate(), player_location[2].get_x_coordinate(), 
-							    m.getTarget_cell_coordinates().get_y_coordinate(), 
-							    m.getTarget_cell_coordinates().get_x_coordinate(), Player_ID.PLAYER_3);
-				
-				case PLAYER_4:
-					return move(player_location[3].get_y_coordinate(), player_location[3].get_x_coordinate(), 
-							    m.getTarget_cell_coordinates().get_y_coordinate(), 
-							    m.getTarget_cell_coordinates().get_x_coordinate(), Player_ID.PLAYER_4);
-				
-				default: // shouldn't reach this case EVER
-					return false;
+		//off the board, and would not fit in the packed form
+		if(!on_board(m.getTarget_cell_coordinates().get_y_coordinate(), m.getTarget_cell_coordinates().get_x_coordinate()))
+			return false;
+		return apply_move(Move.pack(m));
+	}
+	
+	/**
+	 * apply_move for a packed move (see Move.pack), it is taken back with undo_move
+	 * like any other move.
+	 * 
+	 * @param packed
+	 * @return true if the move is applied successfully, false if the move was invalid and not applied
+	 */
+	public boolean apply_move(int packed){
+		Player_ID player_id = Move.packed_player(packed);
+		int player = player_id.ordinal();
+		int row = Move.packed_row(packed);
+		int col = Move.packed_col(packed);
+		boolean horizontal = Move.packed_is_horizontal(packed);
+		int previous = to_move << 18;
+		if(!Move.packed_is_wall(packed)){
+			int from = player_location[player];
+			if(move(from / BOARD_SIZE, from % BOARD_SIZE, row, col, player_id)){
+				set_to_move((player + 1) % 4);
+				push_history(from | cell(row, col) << 7 | player << 14 | previous);
+				return true;
 			}
 			
+			return false;
 		}
 		else{ //placing a wall
-			if(place_wall(m.getTarget_cell_coordinates().get_y_coordinate(), m.getTarget_cell_coordinates().get_x_coordinate(), m.getIs_horizontal())){
-				switch(m.getPlayer_making_move()){
-					case PLAYER_1:
-						walls[0]--;
-						break;
-						
-					case PLAYER_2:
-						walls[1]--;
-						break;
-						
-					case PLAYER_3:
-						walls[2]--;
-						break;
-						
-					case PLAYER_4:
-						walls[3]--;
-						break;
-				}
-				
+			if(place_wall(row, col, horizontal)){
+				set_wall_count(player, walls[player] - 1);
+				set_to_move((player + 1) % 4);
+				if(horizontal)
+					push_history(horizontal_slot(row, col) | player << 14 | RECORD_WALL | RECORD_HORIZONTAL | previous);
+				else
+					push_history(vertical_slot(row, col) | player << 14 | RECORD_WALL | previous);
 				return true;
 			}
 			
 			return false;
 		}
 	}
+
+	/**
+	 * Takes back the last move applied with apply_move. The pawn location or the wall and
+	 * wall count are restored, so a search can walk the game tree on one board instead of
+	 * copying it per node.
+	 *
+	 * @return true if a move was undone, false if there is no move to undo
+	 */
+	public boolean undo_move(){
+		if(history_size == 0)
+			return false;
+		
+		history_size--;
+		int record = history[history_size];
+		int player = (record >> 14) & 3;
+		if((record & RECORD_WALL) != 0){
+			toggle_wall(record & 0x7F, (record & RECORD_HORIZONTAL) != 0);
+			set_wall_count(player, walls[player] + 1);
+		}
+		else{
+			int from = record & 0x7F;
+			place_pawn(player, from / BOARD_SIZE, from % BOARD_SIZE);
+		}
+		set_to_move((record >> 18) & 3);
+		return true;
+	}
+
+	/**
+	 * Re-applies the last move taken back with undo_move. Applying a new move discards
+	 * the moves that could be redone.
+	 *
+	 * @return true if a move was redone, false if there is no move to redo
+	 */
+	public boolean redo_move(){
+		if(history_size == redo_size)
+			return false;
+		
+		int record = history[history_size];
+		int player = (record >> 14) & 3;
+		if((record & RECORD_WALL) != 0){
+			toggle_wall(record & 0x7F, (record & RECORD_HORIZONTAL) != 0);
+			set_wall_count(player, walls[player] - 1);
+		}
+		else{
+			int to = (record >> 7) & 0x7F;
+			place_pawn(player, to / BOARD_SIZE, to % BOARD_SIZE);
+		}
+		set_to_move((player + 1) % 4);
+		history_size++;
+		return true;
+	}
+
+	private void push_history(int record){
+		if(history == null)
+			history = new int[32];
+		else if(history_size == history.length)
+			history = Arrays.copyOf(history, history_size * 2);
+		history[history_size] = record;
+		history_size++;
+		redo_size = history_size;
+	}
 	
 	/**
 	 * Determine the set of possible moves available to the player with the specified id from
@@ -965,105 +1860,307 @@ public class Board {
 	 * @return
 	 */
 	public Vector<Move> get_possible_moves(Player_ID player_id){
-		Vector<Move> possible_moves = new Vector<Move>();
+		if(move_buffer == null)
+			move_buffer = new Move_List();
+		get_possible_moves(player_id, move_buffer);
+		
+		Vector<Move> possible_moves = new Vector<Move>(move_buffer.size());
+		for(int i = 0; i < move_buffer.size(); i++){
+			possible_moves.add(unpack_move(move_buffer.get(i)));
+		}
+		return possible_moves;
+	}
+	
+	/**
+	 * Same as get_possible_moves(Player_ID), in the same order, but the moves are packed
+	 * (see Move.pack) into the provided list so searches can generate moves without
+	 * allocating.
+	 * 
+	 * @param player_id
+	 * @param moves - cleared, then receives the moves
+	 */
+	public void get_possible_moves(Player_ID player_id, Move_List moves){
+		moves.clear();
+		add_pawn_moves(player_id, moves);
+		
+		//wall-placing options
+		if(walls[player_id.ordinal()] > 0){
+			for(int i = 0; i <= BOARD_SIZE-1; i++){
+				for(int j = 0; j <= BOARD_SIZE-1; j++){
+					if(can_place_wall(i, j, true)){
+						moves.add(Move.pack(MOVE_TYPE.PLACE_WALL, player_id, i, j, true));
+					}
+					if(can_place_wall(i, j, false)){
+						moves.add(Move.pack(MOVE_TYPE.PLACE_WALL, player_id, i, j, false));
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Same as get_possible_moves(Player_ID), but only the walls that can change the race:
+	 * walls that block a step of an opponent's shortest path, and walls next to the
+	 * mover's own shortest path, which can defend it. Every pawn move is kept.
+	 * 
+	 * @param player_id
+	 * @return
+	 */
+	public Vector<Move> get_relevant_moves(Player_ID player_id){
+		if(move_buffer == null)
+			move_buffer = new Move_List();
+		get_relevant_moves(player_id, move_buffer);
+		
+		Vector<Move> relevant_moves = new Vector<Move>(move_buffer.size());
+		for(int i = 0; i < move_buffer.size(); i++){
+			relevant_moves.add(unpack_move(move_buffer.get(i)));
+		}
+		return relevant_moves;
+	}
+	
+	/**
+	 * Same as get_relevant_moves(Player_ID), packed into the provided list.
+	 * 
+	 * @param player_id
+	 * @param moves - cleared, then receives the moves
+	 */
+	public void get_relevant_moves(Player_ID player_id, Move_List moves){
+		moves.clear();
+		add_pawn_moves(player_id, moves);
 		
+		int mover = player_id.ordinal();
+		if(walls[mover] == 0)
+			return;
+		if(path_cells == null)
+			path_cells = new long[4][2];
+		for(int p = 0; p < 4; p++)
+			get_shortest_path_cells(PLAYER_IDS[p], path_cells[p]);
+		for(int i = 0; i <= BOARD_SIZE-1; i++){
+			for(int j = 0; j <= BOARD_SIZE-1; j++){
+				if(is_relevant_wall(mover, i, j, true) && can_place_wall(i, j, true)){
+					moves.add(Move.pack(MOVE_TYPE.PLACE_WALL, player_id, i, j, true));
+				}
+				if(is_relevant_wall(mover, i, j, false) && can_place_wall(i, j, false)){
+					moves.add(Move.pack(MOVE_TYPE.PLACE_WALL, player_id, i, j, false));
+				}
+			}
+		}
+	}
+	
+	// uses the path cells of get_relevant_moves
+	private boolean is_relevant_wall(int mover, int row, int col, boolean horizontal){
+		if(touches_path(path_cells[mover], row, col, horizontal))
+			return true;
+		for(int p = 0; p < 4; p++){
+			if(p != mover && blocks_shortest_path(PLAYER_IDS[p], path_cells[p], row, col, horizontal))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Does the wall block a step between two neighbouring cells of the player's shortest
+	 * paths, one of them a step closer to the goal than the other.
+	 * 
+	 * @param p
+	 * @param cells - the player's cells from get_shortest_path_cells
+	 * @param row
+	 * @param col
+	 * @param horizontal
+	 */
+	public boolean blocks_shortest_path(Player_ID p, long[] cells, int row, int col, boolean horizontal){
+		int base = p.ordinal() * CELLS;
+		// a wall blocks the step from a to a + step and from a + side to a + side + step
+		int a, step, side;
+		if(horizontal){
+			if(row < 1 || row > BOARD_SIZE-1 || col < 0 || col > BOARD_SIZE-2)
+				return false;
+			a = cell(row - 1, col);
+			step = BOARD_SIZE;
+			side = 1;
+		}
+		else{
+			if(col < 1 || col > BOARD_SIZE-1 || row < 0 || row > BOARD_SIZE-2)
+				return false;
+			a = cell(row, col - 1);
+			step = 1;
+			side = BOARD_SIZE;
+		}
+		for(int k = 0; k < 2; k++, a += side){
+			int b = a + step;
+			if(in_cells(cells, a) && in_cells(cells, b)
+					&& Math.abs(goal_distance[base + a] - goal_distance[base + b]) == 1)
+				return true;
+		}
+		return false;
+	}
+	
+	// is any of the four cells beside the wall in the set
+	private boolean touches_path(long[] cells, int row, int col, boolean horizontal){
+		if(horizontal){
+			if(row < 1 || row > BOARD_SIZE-1 || col < 0 || col > BOARD_SIZE-2)
+				return false;
+			int a = cell(row - 1, col);
+			return in_cells(cells, a) || in_cells(cells, a + 1)
+					|| in_cells(cells, a + BOARD_SIZE) || in_cells(cells, a + BOARD_SIZE + 1);
+		}
+		if(col < 1 || col > BOARD_SIZE-1 || row < 0 || row > BOARD_SIZE-2)
+			return false;
+		int a = cell(row, col - 1);
+		return in_cells(cells, a) || in_cells(cells, a + 1)
+				|| in_cells(cells, a + BOARD_SIZE) || in_cells(cells, a + BOARD_SIZE + 1);
+	}
+	
+	private static boolean in_cells(long[] cells, int x){
+		return (cells[x >> 6] & (1L << x)) != 0;
+	}
+	
+	/**
+	 * The pawn moves of get_possible_moves(Player_ID, Move_List), in the same order.
+	 * 
+	 * @param player_id
+	 * @param moves - cleared, then receives the moves
+	 */
+	public void get_pawn_moves(Player_ID player_id, Move_List moves){
+		moves.clear();
+		add_pawn_moves(player_id, moves);
+	}
+	
+	/**
+	 * Does the player have a move, without generating every move.
+	 * 
+	 * @param player_id
+	 * @return true if get_possible_moves would not be empty
+	 */
+	public boolean has_possible_moves(Player_ID player_id){
+		int row = player_location[player_id.ordinal()] / BOARD_SIZE;
+		int col = player_location[player_id.ordinal()] % BOARD_SIZE;
+		for(int[] offset : PAWN_OFFSETS){
+			if(can_move_to(row, col, row + offset[0], col + offset[1]))
+				return true;
+		}
+		if(walls[player_id.ordinal()] > 0){
+			for(int i = 0; i <= BOARD_SIZE-1; i++){
+				for(int j = 0; j <= BOARD_SIZE-1; j++){
+					if(can_place_wall(i, j, true) || can_place_wall(i, j, false))
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * The pawn moves of get_possible_moves.
+	 */
+	private void add_pawn_moves(Player_ID player_id, Move_List moves){
 		//moving options
-		int player_row_location;
-		int player_col_location;
-		int walls_available = 0;
-		switch(player_id){
-			case PLAYER_1:
-				player_row_location = player_location[0].get_y_coordinate();
-				player_col_location = player_location[0].get_x_coordinate();
-				walls_available = walls[0];
-				break;
-			case PLAYER_2:
-				player_row_location = player_location[1].get_y_coordinate();
-				player_col_location = player_location[1].get_x_coordinate();
-				walls_available = walls[1];
-				break;
-			case PLAYER_3:
-				player_row_location = player_location[2].get_y_coordinate();
-				player_col_location = player_location[2].get_x_coordinate();
-				walls_available = walls[2];
-				break;
-			case PLAYER_4:
-				player_row_location = player_location[3].get_y_coordinate();
-				player_col_location = player_location[3].get_x_coordinate();
-				walls_available = walls[3];
-				break;
-			default:
-				//this should never happen
-				player_col_location = 0;
-				player_row_location = 0;
-				break;
+		int player_row_location = player_location[player_id.ordinal()] / BOARD_SIZE;
+		int player_col_location = player_location[player_id.ordinal()] % BOARD_SIZE;
 					
-		}
 		//up
 		if(can_move_to(player_row_location, player_col_location, player_row_location-1, player_col_location)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location-1, player_col_location)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location-1, player_col_location, false));
 		}
 		//down
 		if(can_move_to(player_row_location, player_col_location, player_row_location+1, player_col_location)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location+1, player_col_location)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location+1, player_col_location, false));
 		}
 		//left
 		if(can_move_to(player_row_location, player_col_location, player_row_location, player_col_location-1)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location, player_col_location-1)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location, player_col_location-1, false));
 		}
 		//right
 		if(can_move_to(player_row_location, player_col_location, player_row_location, player_col_location+1)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location, player_col_location+1)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location, player_col_location+1, false));
 		}
 		//up-left
 		if(can_move_to(player_row_location, player_col_location, player_row_location-1, player_col_location-1)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location-1, player_col_location-1)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location-1, player_col_location-1, false));
 		}
 		//up-right
 		if(can_move_to(player_row_location, player_col_location, player_row_location-1, player_col_location+1)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location-1, player_col_location+1)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location-1, player_col_location+1, false));
 		}
 		//down-right
 		if(can_move_to(player_row_location, player_col_location, player_row_location+1, player_col_location+1)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location+1, player_col_location+1)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location+1, player_col_location+1, false));
 		}
 		//down-left
 		if(can_move_to(player_row_location, player_col_location, player_row_location+1, player_col_location-1)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location+1, player_col_location-1)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location+1, player_col_location-1, false));
 		}
 		//jumping moves
 		//up2
 		if(can_move_to(player_row_location, player_col_location, player_row_location-2, player_col_location)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location-2, player_col_location)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location-2, player_col_location, false));
 		}
 		//down2
 		if(can_move_to(player_row_location, player_col_location, player_row_location+2, player_col_location)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location+2, player_col_location)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location+2, player_col_location, false));
 		}
 		//left2
 		if(can_move_to(player_row_location, player_col_location, player_row_location, player_col_location-2)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location, player_col_location-2)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location, player_col_location-2, false));
 		}
 		//right2
 		if(can_move_to(player_row_location, player_col_location, player_row_location, player_col_location+2)){
-			possible_moves.add(new Move(MOVE_TYPE.MOVE_PAWN, player_id, new Coordinate_Pair(player_row_location, player_col_location+2)));
+			moves.add(Move.pack(MOVE_TYPE.MOVE_PAWN, player_id, player_row_location, player_col_location+2, false));
 		}
+	}
 		
-		//wall-placing options
-		if(walls_available > 0){
-			for(int i = 0; i <= BOARD_SIZE-1; i++){
-				for(int j = 0; j <= BOARD_SIZE-1; j++){
-					if(can_place_wall(i, j, true)){
-						possible_moves.add(new Move(MOVE_TYPE.PLACE_WALL, player_id, new Coordinate_Pair(i, j), true));
-					}
-					if(can_place_wall(i, j, false)){
-						possible_moves.add(new Move(MOVE_TYPE.PLACE_WALL, player_id, new Coordinate_Pair(i, j), false));
-					}
-				}
+	private Move unpack_move(int packed){
+		Coordinate_Pair target = COORDINATES[cell(Move.packed_row(packed), Move.packed_col(packed))];
+		if(Move.packed_is_wall(packed))
+			return new Move(MOVE_TYPE.PLACE_WALL, Move.packed_player(packed), target, Move.packed_is_horizontal(packed));
+		return new Move(MOVE_TYPE.MOVE_PAWN, Move.packed_player(packed), target);
+	}
+	
+	/**
+	 * The shortest path of every player after each of the moves, without applying them.
+	 * Entry 4 * i + p is player p's distance after move i. A pawn move only changes the
+	 * mover's distance, it is read from the mover's goal distance map. A wall only
+	 * changes the distance of a player whose every shortest path it blocks, only those
+	 * players are searched again.
+	 * 
+	 * @param moves - legal moves (see get_possible_moves(Player_ID, Move_List))
+	 * @param distances - receives the distances, allocated if null or too short
+	 * @return the distances
+	 */
+	public int[] get_move_distances(Move_List moves, int[] distances){
+		if(distances == null || distances.length < 4 * moves.size())
+			distances = new int[4 * moves.size()];
+		
+		for(int i = 0; i < moves.size(); i++){
+			int packed = moves.get(i);
+			int base = 4 * i;
+			for(int p = 0; p < 4; p++)
+				distances[base + p] = goal_distance[p * CELLS + player_location[p]];
+			
+			int row = Move.packed_row(packed);
+			int col = Move.packed_col(packed);
+			if(!Move.packed_is_wall(packed)){
+				int player = Move.packed_player(packed).ordinal();
+				distances[base + player] = goal_distance[player * CELLS + cell(row, col)];
+				continue;
+			}
+			
+			boolean horizontal = Move.packed_is_horizontal(packed);
+			long wall_bit = 1L << (horizontal ? horizontal_slot(row, col) : vertical_slot(row, col));
+			if(horizontal)
+				horizontal_walls |= wall_bit;
+			else
+				vertical_walls |= wall_bit;
+			for(int p = 0; p < 4; p++){
+				if(!keeps_goal_distances(p, row, col, horizontal) && !keeps_pawn_distance(p))
+					distances[base + p] = search_pawn_distance(p);
 			}
+			if(horizontal)
+				horizontal_walls &= ~wall_bit;
+			else
+				vertical_walls &= ~wall_bit;
 		}
-		
-		return possible_moves;
+		return distances;
 	}
 	
 	/**
@@ -1072,10 +2169,10 @@ public class Board {
 	 * @return true if yes, false otherwise.
 	 */
 	public boolean is_game_over(){
-		return player_location[0].get_y_coordinate() == BOARD_SIZE-1 ||  
-			   player_location[1].get_x_coordinate() == 0 ||
-			   player_location[2].get_y_coordinate() == 0 ||
-			   player_location[3].get_x_coordinate() == BOARD_SIZE-1;
+		return player_location[0] / BOARD_SIZE == BOARD_SIZE-1 ||
+			   player_location[1] % BOARD_SIZE == 0 ||
+			   player_location[2] / BOARD_SIZE == 0 ||
+			   player_location[3] % BOARD_SIZE == BOARD_SIZE-1;
 	}
 	
 	/**
@@ -1085,13 +2182,13 @@ public class Board {
 	 * @return the id of the winner, if there is a tie, null is returned.
 	 */
 	public Player_ID compute_winner(){
-		if(player_location[0].get_y_coordinate() == BOARD_SIZE-1)
+		if(player_location[0] / BOARD_SIZE == BOARD_SIZE-1)
 			return Player_ID.PLAYER_1;
-		else if(player_location[1].get_x_coordinate() == 0)
+		else if(player_location[1] % BOARD_SIZE == 0)
 			return Player_ID.PLAYER_2;
-		else if(player_location[2].get_y_coordinate() == 0)
+		else if(player_location[2] / BOARD_SIZE == 0)
 			return Player_ID.PLAYER_3;
-		else if(player_location[3].get_x_coordinate() == BOARD_SIZE-1)
+		else if(player_location[3] % BOARD_SIZE == BOARD_SIZE-1)
 			return Player_ID.PLAYER_4;
 		else{
 			int[] shortest_path_distances = new int[4];
@@ -1143,40 +2240,45 @@ public class Board {
 	}
 	
 	public Coordinate_Pair get_player_location(Player_ID p){
-		switch(p){
-			case PLAYER_1:
-				return player_location[0];
-			case PLAYER_2:
-				return player_location[1];
-			case PLAYER_3:
-				return player_location[2];
-			case PLAYER_4:
-				return player_location[3];
-		}
-		return null; //satisfies compiler, should not be reached
+		return COORDINATES[player_location[p.ordinal()]];
 	}
 	
 	public int get_wall_count(Player_ID p){
-		switch(p){
-			case PLAYER_1:
-				return walls[0];
-			case PLAYER_2:
-				return walls[1];
-			case PLAYER_3:
-				return walls[2];
-			case PLAYER_4:
-				return walls[3];
-		}
-		return 0;
+		return walls[p.ordinal()];
 	}
 	
 	/**
-	 * Accessor for the underlying grid structure.
+	 * Builds a grid view of the board, the pawns are stored as cell data and the walls
+	 * are removed from the neighbor lists. The grid is a snapshot, changing it does not
+	 * change the board.
 	 * 
 	 * @return
 	 */
 	public RectangularGrid<Cell_Status> get_board(){
-		return board;
+		Cell_Status[][] cells = new Cell_Status[BOARD_SIZE][BOARD_SIZE];
+		for(int i = 0; i < BOARD_SIZE; i++){
+			for(int j = 0; j < BOARD_SIZE; j++){
+				cells[i][j] = Cell_Status.FREE;
+			}
+		}
+		cells[player_location[0] / BOARD_SIZE][player_location[0] % BOARD_SIZE] = Cell_Status.P1;
+		cells[player_location[1] / BOARD_SIZE][player_location[1] % BOARD_SIZE] = Cell_Status.P2;
+		cells[player_location[2] / BOARD_SIZE][player_location[2] % BOARD_SIZE] = Cell_Status.P3;
+		cells[player_location[3] / BOARD_SIZE][player_location[3] % BOARD_SIZE] = Cell_Status.P4;
+		RectangularGrid<Cell_Status> grid = new RectangularGrid<Cell_Status>(BOARD_SIZE, BOARD_SIZE, cells);
+
+		for(int i = 0; i < BOARD_SIZE; i++){
+			for(int j = 0; j < BOARD_SIZE; j++){
+				for(int dir = UP; dir <= RIGHT; dir++){
+					int c = cell(i, j);
+					if((EDGE_BLOCKED[c] & (1 << dir)) == 0 && !is_open(c, dir)){
+						grid.get_cell(i, j).get_neighbors().remove(
+								grid.get_cell((c + STEP[dir]) / BOARD_SIZE, (c + STEP[dir]) % BOARD_SIZE));
+					}
+				}
+			}
+		}
+		return grid;
 	}
 	
 	/**
@@ -1211,13 +2313,8 @@ public class Board {
 -------------------
 		 */
 				
-		b.board.get_cell(b.player_location[2].get_y_coordinate(), b.player_location[2].get_x_coordinate()).set_data(Cell_Status.FREE);
-		b.player_location[2] = new Coordinate_Pair(3, 0);
-		b.board.get_cell(3, 0).set_data(Cell_Status.P3);
-		
-		b.board.get_cell(b.player_location[3].get_y_coordinate(), b.player_location[3].get_x_coordinate()).set_data(Cell_Status.FREE);
-		b.player_location[3] = new Coordinate_Pair(3, 1);
-		b.board.get_cell(3, 1).set_data(Cell_Status.P4);
+		b.place_pawn(2, 3, 0);
+		b.place_pawn(3, 3, 1);
 		
 		b.place_wall(7, 7, true);
 		System.out.println("After placing a walls: \n" + b);
@@ -0,0 +1,197 @@
+package game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Goal distance maps of wall configurations, so a board whose walls change to a
+ * configuration seen before copies its four distance maps instead of repairing them,
+ * see Board.set_distance_cache. Searches place and take back the same few walls over
+ * and over while the pawns move between them, so most wall changes are repeats.
+ *
+ * An entry is keyed by the placed walls, both bitboards, and holds the maps of every
+ * player. The least recently used entries are evicted to keep the cache under its
+ * memory cap. The entries are split over segments with their own locks so the boards
+ * of many threads can share one cache. A board looks entries up with its own Probe so
+ * a lookup allocates nothing, only a new entry does.
+ */
+public class Distance_Cache {
+	// bytes of one entry's maps
+	public static final int MAP_BYTES = 4 * 81;
+	// the maps plus the key, the map entry and the array headers
+	private static final int ENTRY_BYTES = MAP_BYTES + 96;
+	private static final int SEGMENTS = 16;
+
+	private static Distance_Cache shared;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final long max_bytes;
+
+	/**
+	 * One lock's share of the entries, kept in access order.
+	 */
+	private static class Segment extends LinkedHashMap<Walls, byte[]> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+		long hits, misses;
+
+		Segment(int capacity){
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<Walls, byte[]> eldest){
+			return size() > capacity;
+		}
+	}
+
+	/**
+	 * The placed walls of a board. The keys of the entries are never changed, a probe's
+	 * key is set before every lookup.
+	 */
+	private static final class Walls {
+		long horizontal;
+		long vertical;
+
+		Walls(long horizontal, long vertical){
+			this.horizontal = horizontal;
+			this.vertical = vertical;
+		}
+
+		public int hashCode(){
+			long h = (horizontal * 0x9E3779B97F4A7C15L) ^ vertical;
+			h *= 0xC2B2AE3D27D4EB4FL;
+			return (int)(h ^ (h >>> 32));
+		}
+
+		public boolean equals(Object o){
+			if(!(o instanceof Walls))
+				return false;
+			Walls w = (Walls) o;
+			return w.horizontal == horizontal && w.vertical == vertical;
+		}
+	}
+
+	/**
+	 * The lookup key of one board, not shared between threads.
+	 */
+	public static final class Probe {
+		private final Walls key = new Walls(0, 0);
+
+		private Walls set(long horizontal, long vertical){
+			key.horizontal = horizontal;
+			key.vertical = vertical;
+			return key;
+		}
+	}
+
+	/**
+	 * @param max_bytes - memory the entries may use
+	 */
+	public Distance_Cache(long max_bytes){
+		this.max_bytes = max_bytes;
+		int capacity = (int) Math.max(max_bytes / ENTRY_BYTES / SEGMENTS, 1);
+		for(int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment(capacity);
+	}
+
+	/**
+	 * The cache shared by the search players, sized by the distance.cache.mb system
+	 * property. The cache is off unless the property is set, 0 or no property returns
+	 * null.
+	 */
+	public static synchronized Distance_Cache shared(){
+		int mb = Integer.getInteger("distance.cache.mb", 0);
+		if(shared == null && mb > 0)
+			shared = new Distance_Cache(mb * (1L << 20));
+		return shared;
+	}
+
+	/**
+	 * Copies the maps of a wall configuration.
+	 *
+	 * @param probe - the caller's lookup key
+	 * @param horizontal - the horizontal wall bitboard
+	 * @param vertical - the vertical wall bitboard
+	 * @param maps - receives the MAP_BYTES of maps
+	 * @return true on a hit, false if the configuration is not cached and maps is
+	 *         unchanged
+	 */
+	public boolean get(Probe probe, long horizontal, long vertical, byte[] maps){
+		Walls key = probe.set(horizontal, vertical);
+		Segment segment = segment(key);
+		synchronized(segment){
+			byte[] cached = segment.get(key);
+			if(cached == null){
+				segment.misses++;
+				return false;
+			}
+			segment.hits++;
+			System.arraycopy(cached, 0, maps, 0, MAP_BYTES);
+			return true;
+		}
+	}
+
+	/**
+	 * Stores a copy of the maps of a wall configuration, unless another board already
+	 * stored them.
+	 */
+	public void put(Probe probe, long horizontal, long vertical, byte[] maps){
+		Walls key = probe.set(horizontal, vertical);
+		Segment segment = segment(key);
+		synchronized(segment){
+			if(segment.containsKey(key))
+				return;
+		}
+		byte[] copy = new byte[MAP_BYTES];
+		System.arraycopy(maps, 0, copy, 0, MAP_BYTES);
+		synchronized(segment){
+			segment.put(new Walls(horizontal, vertical), copy);
+		}
+	}
+
+	private Segment segment(Walls key){
+		// the high bits, the low ones pick the segment's buckets
+		return segments[key.hashCode() >>> 28];
+	}
+
+	public long get_hits(){
+		long hits = 0;
+		for(Segment s : segments){
+			synchronized(s){
+				hits += s.hits;
+			}
+		}
+		return hits;
+	}
+
+	public long get_misses(){
+		long misses = 0;
+		for(Segment s : segments){
+			synchronized(s){
+				misses += s.misses;
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * Number of cached configurations.
+	 */
+	public int size(){
+		int size = 0;
+		for(Segment s : segments){
+			synchronized(s){
+				size += s.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * The memory cap in bytes.
+	 */
+	public long get_max_bytes(){
+		return max_bytes;
+	}
+}
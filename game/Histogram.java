@@ -0,0 +1,92 @@
+package game;
+
+/**
+ * A histogram of positive values with logarithmic buckets, BUCKETS_PER_DOUBLING buckets
+ * for every power of two, so percentiles are accurate to about 9%. Values at or below
+ * zero are counted in the first bucket.
+ */
+public class Histogram {
+	private static final int BUCKETS_PER_DOUBLING = 8;
+	// smallest value with its own bucket is 2^MIN_EXPONENT
+	private static final int MIN_EXPONENT = -20;
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKETS = (MAX_EXPONENT - MIN_EXPONENT) * BUCKETS_PER_DOUBLING + 1;
+
+	private long[] buckets = new long[BUCKETS];
+	private long count;
+	private double sum;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	public synchronized void add(double value){
+		buckets[bucket(value)]++;
+		count++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	public synchronized long get_count(){
+		return count;
+	}
+
+	public synchronized double get_mean(){
+		return count == 0 ? 0 : sum / count;
+	}
+
+	public synchronized double get_min(){
+		return count == 0 ? 0 : min;
+	}
+
+	public synchronized double get_max(){
+		return count == 0 ? 0 : max;
+	}
+
+	/**
+	 * The value below which the given fraction of the values fall, the upper bound of
+	 * its bucket clamped to the observed range.
+	 *
+	 * @param fraction - between 0 and 1
+	 */
+	public synchronized double get_percentile(double fraction){
+		if(count == 0)
+			return 0;
+		long rank = (long)Math.ceil(fraction * count);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			seen += buckets[i];
+			if(seen >= rank && buckets[i] > 0)
+				return Math.max(min, Math.min(max, upper_bound(i)));
+		}
+		return max;
+	}
+
+	/**
+	 * Non empty buckets as {lower bound, upper bound, count} rows.
+	 */
+	public synchronized double[][] get_buckets(){
+		int used = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			if(buckets[i] > 0)
+				used++;
+		}
+		double[][] rows = new double[used][];
+		int r = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			if(buckets[i] > 0)
+				rows[r++] = new double[]{i == 0 ? 0 : upper_bound(i - 1), upper_bound(i), buckets[i]};
+		}
+		return rows;
+	}
+
+	private static int bucket(double value){
+		if(value <= 0)
+			return 0;
+		double index = Math.ceil((Math.log(value) / Math.log(2) - MIN_EXPONENT) * BUCKETS_PER_DOUBLING);
+		return (int)Math.max(0, Math.min(BUCKETS - 1, index));
+	}
+
+	private static double upper_bound(int bucket){
+		return Math.pow(2, MIN_EXPONENT + (double)bucket / BUCKETS_PER_DOUBLING);
+	}
+}
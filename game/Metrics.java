@@ -0,0 +1,50 @@
+package game;
+
+/**
+ * Receives measurements from Quoridor.run_game and the search players. Players that
+ * implement players.Instrumented are handed the game's metrics before the first move.
+ *
+ * Every measurement is reported once per turn and keyed by the reporting player's name,
+ * so implementations can be shared by games running on several threads.
+ */
+public interface Metrics {
+	/**
+	 * Board operations whose time is reported per turn.
+	 */
+	public enum Operation { POSSIBLE_MOVES, SHORTEST_PATH, BOARD_COPY };
+
+	/**
+	 * Wall time of one make_move call.
+	 */
+	public void record_turn(String player, long nanos);
+
+	/**
+	 * The size of one turn's search.
+	 *
+	 * @param player
+	 * @param nodes - positions evaluated
+	 * @param depth - deepest completed search depth
+	 * @param branching - average number of moves of an expanded position
+	 */
+	public void record_search(String player, long nodes, int depth, double branching);
+
+	/**
+	 * Total time spent in a board operation during one turn.
+	 */
+	public void record_operation(String player, Operation operation, long nanos);
+
+	/**
+	 * Goal path cache counters of the boards used during one turn.
+	 */
+	public void record_cache(String player, long hits, long misses);
+
+	/**
+	 * How early the searches of one turn were cut off.
+	 *
+	 * @param player
+	 * @param expanded - positions whose moves were searched
+	 * @param cutoffs - positions whose search ended before the last move
+	 * @param first_move_cutoffs - positions whose search ended after the first move
+	 */
+	public void record_cutoffs(String player, long expanded, long cutoffs, long first_move_cutoffs);
+}
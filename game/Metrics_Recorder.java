@@ -0,0 +1,111 @@
+package game;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Metrics that aggregates every measurement into a histogram per player and metric,
+ * and exports the summaries as CSV or JSON. Times are recorded in milliseconds.
+ */
+public class Metrics_Recorder implements Metrics {
+	// player name -> metric name -> histogram, sorted so exports are stable
+	private final TreeMap<String, TreeMap<String, Histogram>> histograms = new TreeMap<String, TreeMap<String, Histogram>>();
+
+	public void record_turn(String player, long nanos){
+		get(player, "turn_ms").add(nanos / 1e6);
+	}
+
+	public void record_search(String player, long nodes, int depth, double branching){
+		get(player, "nodes").add(nodes);
+		get(player, "depth").add(depth);
+		get(player, "branching").add(branching);
+	}
+
+	public void record_operation(String player, Operation operation, long nanos){
+		get(player, operation.name().toLowerCase(Locale.ROOT) + "_ms").add(nanos / 1e6);
+	}
+
+	public void record_cache(String player, long hits, long misses){
+		if(hits + misses > 0)
+			get(player, "cache_hit_ratio").add(hits / (double)(hits + misses));
+	}
+
+	public void record_cutoffs(String player, long expanded, long cutoffs, long first_move_cutoffs){
+		if(expanded > 0)
+			get(player, "cutoff_rate").add(cutoffs / (double)expanded);
+		if(cutoffs > 0)
+			get(player, "first_move_cutoff_rate").add(first_move_cutoffs / (double)cutoffs);
+	}
+
+	/**
+	 * The histogram of a metric, created empty the first time it is used.
+	 */
+	public Histogram get(String player, String metric){
+		synchronized(histograms){
+			TreeMap<String, Histogram> metrics = histograms.get(player);
+			if(metrics == null){
+				metrics = new TreeMap<String, Histogram>();
+				histograms.put(player, metrics);
+			}
+			Histogram h = metrics.get(metric);
+			if(h == null){
+				h = new Histogram();
+				metrics.put(metric, h);
+			}
+			return h;
+		}
+	}
+
+	/**
+	 * One row per player and metric with count, mean, min, max and percentiles.
+	 */
+	public void write_csv(PrintWriter out){
+		out.println("player,metric,count,mean,min,max,p50,p90,p99");
+		synchronized(histograms){
+			for(Map.Entry<String, TreeMap<String, Histogram>> player : histograms.entrySet()){
+				for(Map.Entry<String, Histogram> metric : player.getValue().entrySet()){
+					Histogram h = metric.getValue();
+					out.println(String.format(Locale.ROOT, "%s,%s,%d,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f",
+							player.getKey(), metric.getKey(), h.get_count(), h.get_mean(), h.get_min(),
+							h.get_max(), h.get_percentile(0.5), h.get_percentile(0.9), h.get_percentile(0.99)));
+				}
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * The same summaries as write_csv plus the non empty histogram buckets, as
+	 * {player: {metric: {...}}}.
+	 */
+	public void write_json(PrintWriter out){
+		out.println("{");
+		synchronized(histograms){
+			int p = 0;
+			for(Map.Entry<String, TreeMap<String, Histogram>> player : histograms.entrySet()){
+				out.println("  \"" + player.getKey() + "\": {");
+				int m = 0;
+				for(Map.Entry<String, Histogram> metric : player.getValue().entrySet()){
+					Histogram h = metric.getValue();
+					StringBuilder buckets = new StringBuilder();
+					for(double[] row : h.get_buckets()){
+						if(buckets.length() > 0)
+							buckets.append(", ");
+						buckets.append(String.format(Locale.ROOT, "[%.6g, %.6g, %d]", row[0], row[1], (long)row[2]));
+					}
+					out.print(String.format(Locale.ROOT,
+							"    \"%s\": {\"count\": %d, \"mean\": %.4f, \"min\": %.4f, \"max\": %.4f, " +
+							"\"p50\": %.4f, \"p90\": %.4f, \"p99\": %.4f, \"buckets\": [%s]}",
+							metric.getKey(), h.get_count(), h.get_mean(), h.get_min(), h.get_max(),
+							h.get_percentile(0.5), h.get_percentile(0.9), h.get_percentile(0.99), buckets));
+					out.println(++m < player.getValue().size() ? "," : "");
+				}
+				out.println(++p < histograms.size() ? "  }," : "  }");
+			}
+		}
+		out.println("}");
+		out.flush();
+	}
+}
@@ -71,6 +71,19 @@ public class Move {
 	private Coordinate_Pair target_cell_coordinates;
 	private Boolean is_horizontal;
 	
+	/*
+	 * Moves can also be packed into an int so searches can generate and store them
+	 * without allocating, see Board.get_possible_moves(Player_ID, Move_List):
+	 *     bits 0-3   target row
+	 *     bits 4-7   target col
+	 *     bit  8     set for PLACE_WALL
+	 *     bit  9     set for a horizontal wall
+	 *     bits 10-11 player making the move
+	 */
+	private static final int PACKED_WALL = 1 << 8;
+	private static final int PACKED_HORIZONTAL = 1 << 9;
+	private static final Player_ID[] PLAYERS = Player_ID.values();
+	
 	/**
 	 * A constructor for move-pawn type moves
 	 * 
@@ -115,6 +128,54 @@ public class Move {
 		return is_horizontal;
 	}
 	
+	/**
+	 * Packs a move into an int.
+	 */
+	public static int pack(MOVE_TYPE type, Player_ID player_id, int row, int col, boolean is_horizontal){
+		int packed = row | col << 4 | player_id.ordinal() << 10;
+		if(type == MOVE_TYPE.PLACE_WALL){
+			packed |= PACKED_WALL;
+			if(is_horizontal)
+				packed |= PACKED_HORIZONTAL;
+		}
+		return packed;
+	}
+	
+	public static int pack(Move m){
+		return pack(m.move_type, m.player_making_move, m.target_cell_coordinates.get_y_coordinate(),
+				m.target_cell_coordinates.get_x_coordinate(), m.is_horizontal != null && m.is_horizontal);
+	}
+	
+	/**
+	 * Builds the Move object for a packed move.
+	 */
+	public static Move unpack(int packed){
+		Coordinate_Pair target = new Coordinate_Pair(packed_row(packed), packed_col(packed));
+		if(packed_is_wall(packed))
+			return new Move(MOVE_TYPE.PLACE_WALL, packed_player(packed), target, packed_is_horizontal(packed));
+		return new Move(MOVE_TYPE.MOVE_PAWN, packed_player(packed), target);
+	}
+	
+	public static int packed_row(int packed){
+		return packed & 0xF;
+	}
+	
+	public static int packed_col(int packed){
+		return (packed >> 4) & 0xF;
+	}
+	
+	public static boolean packed_is_wall(int packed){
+		return (packed & PACKED_WALL) != 0;
+	}
+	
+	public static boolean packed_is_horizontal(int packed){
+		return (packed & PACKED_HORIZONTAL) != 0;
+	}
+	
+	public static Player_ID packed_player(int packed){
+		return PLAYERS[(packed >> 10) & 3];
+	}
+	
 	public String toString(){
 		StringBuffer buf = new StringBuffer();
 		buf.append("MOVE: ");
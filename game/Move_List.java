@@ -0,0 +1,52 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of packed moves (see Move.pack) that is reused between calls to
+ * Board.get_possible_moves so move generation does not allocate.
+ */
+public class Move_List {
+	private int[] moves;
+	private int size;
+	
+	public Move_List(){
+		this(64);
+	}
+	
+	public Move_List(int capacity){
+		moves = new int[Math.max(capacity, 1)];
+		size = 0;
+	}
+	
+	public void clear(){
+		size = 0;
+	}
+	
+	public void add(int packed){
+		if(size == moves.length)
+			moves = Arrays.copyOf(moves, size * 2);
+		moves[size++] = packed;
+	}
+	
+	public int get(int i){
+		return moves[i];
+	}
+	
+	public void set(int i, int packed){
+		moves[i] = packed;
+	}
+	
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Moves the entry at i to the front, keeping the order of the others.
+	 */
+	public void move_to_front(int i){
+		int packed = moves[i];
+		System.arraycopy(moves, 0, moves, 1, i);
+		moves[0] = packed;
+	}
+}
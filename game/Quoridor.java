@@ -2,25 +2,55 @@ package game;
 
 import java.util.Vector;
 
+import players.Instrumented;
 import players.Player;
 import players.Player_ID;
+import players.Time_Managed;
 
 /**
  * This class implements the logic of running a game of quoridor as well as calculating the winner. 
  */
 public class Quoridor {
 	private static int MAX_TURNS = 200;
-	// Max time per turn in milliseconds
-	private static long max_t = 2000;
 	private static Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, Player_ID.PLAYER_3, Player_ID.PLAYER_4};
+	// name run_game reports its own measurements under
+	public static final String ENGINE = "Quoridor";
 	
 	public static Board run_game(Vector<Player> players, Boolean print){
+		return run_game(players, print, null);
+	}
+	
+	public static Board run_game(Vector<Player> players, Boolean print, Metrics metrics){
+		return run_game(players, print, metrics, Search_Control.PLAYER_MOVE_BUDGET, Search_Control.NO_GAME_BUDGET);
+	}
+	
+	/**
+	 * Runs a game, reporting every turn to the metrics. Instrumented players are given
+	 * the metrics too, Time_Managed players are given the time budgets.
+	 * 
+	 * @param players
+	 * @param print
+	 * @param metrics - null to not record
+	 * @param move_budget_ms - time for one move, or Search_Control.PLAYER_MOVE_BUDGET to keep
+	 *        each player's own
+	 * @param game_budget_ms - time for all of a player's moves, or Search_Control.NO_GAME_BUDGET
+	 * @return the final board
+	 */
+	public static Board run_game(Vector<Player> players, Boolean print, Metrics metrics,
+			long move_budget_ms, long game_budget_ms){
 		int current_turn = 0;
 		Board b = new Board();
 		int player_turn_idx = 0;
+		String[] names = new String[4];
+		Search_Control control = new Search_Control(move_budget_ms, game_budget_ms);
 		
 		for(int i = 0; i < 4; i++){
 			players.get(i).set_id(players_ids[i]);
+			names[i] = players.get(i).getClass().getSimpleName();
+			if(players.get(i) instanceof Instrumented)
+				((Instrumented) players.get(i)).set_metrics(metrics);
+			if(players.get(i) instanceof Time_Managed)
+				((Time_Managed) players.get(i)).set_search_control(control);
 		}
 		
 		while(current_turn < MAX_TURNS && !(b.is_game_over())){
@@ -31,7 +61,10 @@ public class Quoridor {
 			}
 
 			// Handle odd situation where a player has no moves
-			if(b.get_possible_moves(players_ids[player_turn_idx]).size() == 0){
+			long moves_start = System.nanoTime();
+			boolean no_moves = b.get_possible_moves(players_ids[player_turn_idx]).size() == 0;
+			long moves_nanos = System.nanoTime() - moves_start;
+			if(no_moves){
 				if ( print )
 					System.out.println("Player " + (player_turn_idx + 1) + " skipped:\n" + b);
 				current_turn++;
@@ -40,9 +73,16 @@ public class Quoridor {
 			}
 
 			// Make move
+			long copy_start = System.nanoTime();
+			Board copy = new Board(b);
+			long start_nanos = System.nanoTime();
+			long copy_nanos = start_nanos - copy_start;
 			long start_t = System.currentTimeMillis();
-			Move move_made = players.get(player_turn_idx).make_move(new Board(b));
+			Move move_made = players.get(player_turn_idx).make_move(copy);
 			long delta_t = System.currentTimeMillis() - start_t;
+			if(metrics != null){
+				metrics.record_turn(names[player_turn_idx], System.nanoTime() - start_nanos);
+			}
 
 			// if the move is invalid
 			if(!b.apply_move(move_made)){
@@ -52,14 +92,22 @@ public class Quoridor {
 			
 			for(int i = 0; i < players.size(); i++){
 				if(i != player_turn_idx){
-					players.get(i).notify_of_move(players_ids[player_turn_idx], move_made, new Board(b));
+					copy_start = System.nanoTime();
+					Board notify_copy = new Board(b);
+					copy_nanos += System.nanoTime() - copy_start;
+					players.get(i).notify_of_move(players_ids[player_turn_idx], move_made, notify_copy);
 				}
 			}
+			// the game's own work, the players report theirs
+			if(metrics != null){
+				metrics.record_operation(ENGINE, Metrics.Operation.POSSIBLE_MOVES, moves_nanos);
+				metrics.record_operation(ENGINE, Metrics.Operation.BOARD_COPY, copy_nanos);
+			}
 			
 			if ( print ) {
 				// Print board and other usefull information
 				System.out.println(move_made);
-				System.out.println("Time: " + delta_t + "ms " + ( (delta_t > max_t) ? "OVERTIME": "" ) );
+				System.out.println("Time: " + delta_t + "ms " + ( (delta_t > control.get_move_budget_ms(players_ids[player_turn_idx])) ? "OVERTIME": "" ) );
 				System.out.println(b); // Print board
 				System.out.println("          Current   Walls  Distance");
 				System.out.println("          Location  Left    to Win");
@@ -70,7 +118,7 @@ public class Quoridor {
 						b.get_wall_count(players_ids[i]) + "       " +
 						b.shortest_path(players_ids[i] ) );
 				}
-				System.out.println("Hit/Miss: " + b.cache_hit + "/" + b.cache_miss );
+				System.out.println("Hit/Miss: " + b.get_path_cache_hits() + "/" + b.get_path_cache_misses() );
 				System.out.println("");
 			}
 			
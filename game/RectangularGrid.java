@@ -1,6 +1,7 @@
 package game;
 
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Vector;
 
@@ -8,7 +9,15 @@ import java.util.Vector;
  * A simple implementation of a rectangular grid. 
  */
 public class RectangularGrid <T> {
+	// distance of a cell that cannot be reached
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+	
 	private Cell<T> m_cells[][];
+	private int m_rows;
+	private int m_cols;
+	// breadth first search queue and neighbor buffer, reused between searches
+	private int[] m_queue;
+	private Object[] m_neighbors = new Object[8];
 	
 	/**
 	 * Creates a rectangular grid with the provided initial data in the respective
@@ -21,6 +30,9 @@ public class RectangularGrid <T> {
 	@SuppressWarnings("unchecked")
 	public RectangularGrid(int rows, int cols, T[][] cells){
 		m_cells = new Cell[rows][cols];
+		m_rows = rows;
+		m_cols = cols;
+		m_queue = new int[rows * cols];
 		
 		//instantiate all of the cells w/o neighbors
 		for(int i = 0; i < rows; i++){
@@ -64,41 +76,84 @@ public class RectangularGrid <T> {
 	 * length of the shortest path from the specified source node to node i.
 	 */
 	public HashMap<Cell<T>, Integer> dijkstra(int row, int col){
-		Vector<Cell<T>> queue = new Vector<Cell<T>>();
-		HashMap<Cell<T>, Integer> distances = new HashMap<Cell<T>, Integer>();
-		HashMap<Cell<T>, Boolean> visited = new HashMap<Cell<T>, Boolean>(); 
-		for(int i = 0; i < m_cells.length; i++){
-			for(int j = 0; j < m_cells[i].length; j++){
-				queue.add(m_cells[i][j]);
-				distances.put(m_cells[i][j], Integer.MAX_VALUE);
+		int[] distances = bfs(row, col, null);
+		HashMap<Cell<T>, Integer> map = new HashMap<Cell<T>, Integer>();
+		for(int i = 0; i < m_rows; i++){
+			for(int j = 0; j < m_cols; j++){
+				map.put(m_cells[i][j], distances[i * m_cols + j]);
 			}
 		}
-
-		distances.put(m_cells[row][col],  0);
-
-		while(queue.size() > 0){
-			// find the vertex v with the smallest dist[v]
-			int v = 0;
-			for(int i = 0; i < queue.size(); i++){
-				if(distances.get(queue.get(i)) < distances.get(queue.get(v))){
-					v = i;
-				}
-			}
-
-			//break because all remaining nodes are unreachable from source
-			if(distances.get(queue.get(v)) == Integer.MAX_VALUE){
-				break;
+		return map;
+	}
+	
+	/**
+	 * Shortest path lengths from a cell to every cell, following the neighbor lists as
+	 * they are now. Since every edge has length 1 this is a breadth first search, it gives
+	 * the same lengths as dijkstra.
+	 * 
+	 * @param row
+	 * @param col
+	 * @param distances - receives the lengths, indexed by row * cols + col. Allocated if
+	 *                    null or the wrong size.
+	 * @return the distances, UNREACHABLE for cells with no path
+	 */
+	public int[] bfs(int row, int col, int[] distances){
+		return bfs(new int[]{row * m_cols + col}, 1, distances);
+	}
+	
+	/**
+	 * Shortest path lengths from the closest cell of a row, e.g. a goal row.
+	 */
+	public int[] bfs_from_row(int row, int[] distances){
+		int[] sources = new int[m_cols];
+		for(int j = 0; j < m_cols; j++)
+			sources[j] = row * m_cols + j;
+		return bfs(sources, m_cols, distances);
+	}
+	
+	/**
+	 * Shortest path lengths from the closest cell of a column, e.g. a goal column.
+	 */
+	public int[] bfs_from_column(int col, int[] distances){
+		int[] sources = new int[m_rows];
+		for(int i = 0; i < m_rows; i++)
+			sources[i] = i * m_cols + col;
+		return bfs(sources, m_rows, distances);
+	}
+	
+	/**
+	 * Shortest path lengths from the closest of several cells.
+	 * 
+	 * @param sources - cell indexes, row * cols + col
+	 * @param count - number of sources used
+	 * @param distances - receives the lengths, allocated if null or the wrong size
+	 * @return the distances, UNREACHABLE for cells with no path
+	 */
+	public int[] bfs(int[] sources, int count, int[] distances){
+		if(distances == null || distances.length != m_rows * m_cols)
+			distances = new int[m_rows * m_cols];
+		Arrays.fill(distances, UNREACHABLE);
+		
+		int head = 0, tail = 0;
+		for(int i = 0; i < count; i++){
+			if(distances[sources[i]] != 0){
+				distances[sources[i]] = 0;
+				m_queue[tail++] = sources[i];
 			}
+		}
 
-			Cell<T> u = queue.get(v);
-			visited.put(u, true);
-			queue.remove(v);
-
-			//update all non-visited neighbors of u
-			for(Cell<T> neighbor : u.get_neighbors()){
-				int alt = distances.get(u) + 1;
-				if(alt < distances.get(neighbor)){
-					distances.put(neighbor, alt);
+		while(head < tail){
+			int u = m_queue[head++];
+			int alt = distances[u] + 1;
+			// one copy per cell instead of a synchronized Vector call per neighbor, the copy
+			// is null terminated when it is shorter than the buffer
+			Object[] neighbors = m_cells[u / m_cols][u % m_cols].get_neighbors().toArray(m_neighbors);
+			for(int k = 0; k < neighbors.length && neighbors[k] != null; k++){
+				Cell<?> neighbor = (Cell<?>) neighbors[k];
+				int v = neighbor.get_row() * m_cols + neighbor.get_col();
+				if(distances[v] == UNREACHABLE){
+					distances[v] = alt;
+					m_queue[tail++] = v;
 				}
 			}
 		}
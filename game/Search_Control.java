@@ -0,0 +1,145 @@
+package game;
+
+import java.util.Arrays;
+
+import players.Player_ID;
+
+/**
+ * The time a search may take. Quoridor.run_game hands one to every players.Time_Managed
+ * player with the game's budgets, a player starts a turn with start_turn and ends it
+ * with end_turn. A control made with PLAYER_MOVE_BUDGET gives every player the move
+ * budget of its own control, see adopt_move_budget, so a game that only sets a game
+ * budget does not change the players' time per move.
+ *
+ * A turn gets the move budget, or less when the player's remaining game budget is
+ * spread over the moves it is still expected to make. Searches poll should_stop, which
+ * is cheap and safe to call from any thread, and ask next_depth_fits before starting
+ * another iterative deepening depth so no time is spent on a depth that would be
+ * thrown away.
+ */
+public class Search_Control {
+	public static final long NO_GAME_BUDGET = Long.MAX_VALUE;
+	// the move budget that leaves every player its own
+	public static final long PLAYER_MOVE_BUDGET = -1;
+	// move budget of a player that has none of its own
+	private static final long DEFAULT_MOVE_BUDGET_MS = 2000;
+
+	// the remaining game budget is spread over this many moves
+	private static final int MOVES_TO_GO = 10;
+	// part of a turn kept back for returning the move
+	private static final int MARGIN_DIVISOR = 50;
+
+	// nanoseconds of one move, per player
+	private final long[] move_budget = new long[4];
+	private final boolean player_budgets;
+	private final long game_budget;
+	// nanoseconds each player has used of the game budget
+	private final long[] used = new long[4];
+
+	private long turn_start;
+	private volatile long deadline;
+	private volatile boolean stopped;
+	// time of the last two completed depths of the turn
+	private long last_depth, previous_depth;
+
+	/**
+	 * @param move_budget_ms - time for one move, or PLAYER_MOVE_BUDGET
+	 * @param game_budget_ms - time for all of a player's moves in a game, or NO_GAME_BUDGET
+	 */
+	public Search_Control(long move_budget_ms, long game_budget_ms){
+		player_budgets = move_budget_ms == PLAYER_MOVE_BUDGET;
+		Arrays.fill(move_budget, (player_budgets ? DEFAULT_MOVE_BUDGET_MS : move_budget_ms) * 1000000L);
+		game_budget = game_budget_ms == NO_GAME_BUDGET ? NO_GAME_BUDGET : game_budget_ms * 1000000L;
+		deadline = Long.MAX_VALUE;
+	}
+
+	public Search_Control(long move_budget_ms){
+		this(move_budget_ms, NO_GAME_BUDGET);
+	}
+
+	/**
+	 * Keeps the player's move budget of the control it used before this one, when this
+	 * control was made with PLAYER_MOVE_BUDGET. Time_Managed players call it from
+	 * set_search_control.
+	 */
+	public void adopt_move_budget(Player_ID p, Search_Control own){
+		if(player_budgets)
+			move_budget[p.ordinal()] = own.move_budget[p.ordinal()];
+	}
+
+	/**
+	 * Starts the clock of a player's turn and sets its deadline.
+	 */
+	public void start_turn(Player_ID p){
+		turn_start = System.nanoTime();
+		long allotted = move_budget[p.ordinal()];
+		if(game_budget != NO_GAME_BUDGET)
+			allotted = Math.min(allotted, Math.max(game_budget - used[p.ordinal()], 0) / MOVES_TO_GO);
+		deadline = turn_start + allotted - allotted / MARGIN_DIVISOR;
+		stopped = false;
+		last_depth = previous_depth = 0;
+	}
+
+	/**
+	 * Charges the turn to the player's game budget.
+	 */
+	public void end_turn(Player_ID p){
+		used[p.ordinal()] += System.nanoTime() - turn_start;
+	}
+
+	/**
+	 * Should the search return now.
+	 */
+	public boolean should_stop(){
+		return stopped || System.nanoTime() >= deadline;
+	}
+
+	/**
+	 * Ends the current turn's search early.
+	 */
+	public void stop(){
+		stopped = true;
+	}
+
+	/**
+	 * Nanoseconds until the deadline, 0 when it has passed.
+	 */
+	public long time_left(){
+		return Math.max(deadline - System.nanoTime(), 0);
+	}
+
+	/**
+	 * Records how long a completed depth of the turn took.
+	 */
+	public void record_depth(long nanos){
+		previous_depth = last_depth;
+		last_depth = nanos;
+	}
+
+	/**
+	 * Will the next depth finish before the deadline. It is predicted to take the last
+	 * depth's time times the growth from the depth before, or times the given branching
+	 * factor when only one depth has completed.
+	 *
+	 * @param branching - average number of moves of an expanded position
+	 */
+	public boolean next_depth_fits(double branching){
+		if(should_stop())
+			return false;
+		if(last_depth == 0)
+			return true;
+		double growth = previous_depth > 0 ? last_depth / (double)previous_depth : branching;
+		return last_depth * growth <= time_left();
+	}
+
+	public long get_move_budget_ms(Player_ID p){
+		return move_budget[p.ordinal()] / 1000000L;
+	}
+
+	/**
+	 * Milliseconds of the game budget the player has used.
+	 */
+	public long get_time_used_ms(Player_ID p){
+		return used[p.ordinal()] / 1000000L;
+	}
+}
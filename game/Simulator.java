@@ -0,0 +1,111 @@
+package game;
+
+import java.util.Vector;
+
+import players.Instrumented;
+import players.Player;
+import players.Player_ID;
+import players.Time_Managed;
+
+/**
+ * Plays games without printing or measuring, for bulk self-play. The rules and turn
+ * order are those of Quoridor.run_game and deterministic players end in the same final
+ * position, but without a board copy per call:
+ *
+ *     - the players are handed one reused view of the game board, refreshed before
+ *       every make_move and shared by the notifications unless a player changes it
+ *     - a player without moves is found with Board.has_possible_moves instead of
+ *       generating its moves
+ *
+ * A player making an invalid move ends the batch with an IllegalStateException rather
+ * than the process. One simulator plays one game at a time, use one per thread.
+ */
+public class Simulator {
+	private static final int MAX_TURNS = 200;
+	private static Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, Player_ID.PLAYER_3, Player_ID.PLAYER_4};
+
+	/**
+	 * Creates the players of a game of a batch.
+	 */
+	public interface Line_Up {
+		/**
+		 * @param game - index of the game in the batch
+		 * @return the four players in turn order
+		 */
+		public Vector<Player> create(int game);
+	}
+
+	private final long move_budget_ms;
+	private final Board view = new Board();
+
+	/**
+	 * @param move_budget_ms - time for one move of Time_Managed players, or
+	 *        Search_Control.PLAYER_MOVE_BUDGET to keep each player's own
+	 */
+	public Simulator(long move_budget_ms){
+		this.move_budget_ms = move_budget_ms;
+	}
+
+	public Simulator(){
+		this(Search_Control.PLAYER_MOVE_BUDGET);
+	}
+
+	/**
+	 * Plays a batch of games.
+	 *
+	 * @param line_up - creates the players of each game
+	 * @param seeds - seeds[game][i] is given to the game's player i
+	 * @return the final board of each game
+	 */
+	public Board[] play(Line_Up line_up, long[][] seeds){
+		Board[] results = new Board[seeds.length];
+		for(int game = 0; game < seeds.length; game++){
+			Vector<Player> players = line_up.create(game);
+			for(int i = 0; i < 4; i++)
+				players.get(i).set_seed(seeds[game][i]);
+			results[game] = play(players);
+		}
+		return results;
+	}
+
+	/**
+	 * Plays one game, as Quoridor.run_game without printing or metrics.
+	 *
+	 * @return the final board
+	 */
+	public Board play(Vector<Player> players){
+		Board b = new Board();
+		Search_Control control = new Search_Control(move_budget_ms);
+		for(int i = 0; i < 4; i++){
+			players.get(i).set_id(players_ids[i]);
+			if(players.get(i) instanceof Instrumented)
+				((Instrumented) players.get(i)).set_metrics(null);
+			if(players.get(i) instanceof Time_Managed)
+				((Time_Managed) players.get(i)).set_search_control(control);
+		}
+
+		int player_turn_idx = 0;
+		for(int current_turn = 0; current_turn < MAX_TURNS && !b.is_game_over(); current_turn++){
+			Player_ID id = players_ids[player_turn_idx];
+			if(b.has_possible_moves(id)){
+				// make_move may apply moves to the view, it always gets a fresh copy
+				view.copy_from(b);
+				Move move_made = players.get(player_turn_idx).make_move(view);
+				if(!b.apply_move(move_made))
+					throw new IllegalStateException("Player " + (player_turn_idx + 1) + " made an invalid move: " + move_made);
+
+				view.copy_from(b);
+				long key = b.get_zobrist_key();
+				for(int i = 0; i < 4; i++){
+					if(i != player_turn_idx){
+						if(view.get_zobrist_key() != key)
+							view.copy_from(b);
+						players.get(i).notify_of_move(id, move_made, view);
+					}
+				}
+			}
+			player_turn_idx = (player_turn_idx + 1) % 4;
+		}
+		return b;
+	}
+}
@@ -2,46 +2,117 @@ package players;
 
 import game.Board;
 import game.Move;
+import game.Move_List;
+import game.Search_Control;
 
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * A player that uses AlphaBeta for the game of Quoridor.
+ *
+ * The root moves can be searched in parallel on a ForkJoinPool, each task walks its
+ * own copy of the board. The thread count defaults to the alphabeta.threads system
+ * property, 1 searches on the calling thread, so tournaments running many games at
+ * once can keep each player on one core.
+ *
+ * Below the root the moves are ordered by Move_Ordering so the ones likely to end a
+ * position's search early are tried first, the best move of a position is kept in the
+ * transposition table for the next depth.
  */
 public class AlphaBeta_Player extends MinMax_Player {
+	private int threads;
+	private ForkJoinPool pool;
+	// move ordering of each searching thread, the history and killers outlive a worker
+	private final ThreadLocal<Move_Ordering> orderings = new ThreadLocal<Move_Ordering>() {
+		protected Move_Ordering initialValue() {
+			Move_Ordering o = new Move_Ordering();
+			all_orderings.add( o );
+			return o;
+		}
+	};
+	private final Vector<Move_Ordering> all_orderings = new Vector<Move_Ordering>();
+	// search state for the calling thread and the board it searches
+	private final Worker serial = new Worker();
+	private final Board serial_board = new Board();
+	// positions searched, and of those the ones cut off early and cut off by the first move
+	private long cutoffs, first_move_cutoffs;
 	
 	public AlphaBeta_Player(){
+		this(Integer.getInteger("alphabeta.threads", 1));
+	}
+
+	public AlphaBeta_Player(int threads){
 		rng = new Random();
+		control = new Search_Control(1000);
+		set_threads(threads);
+	}
+
+	/**
+	 * Sets the number of threads searching the root moves.
+	 */
+	public void set_threads(int threads){
+		this.threads = Math.max(threads, 1);
+		if ( pool != null && pool.getParallelism() != this.threads ) {
+			pool.shutdown();
+			pool = null;
+		}
 	}
 
 	/**
 	 * returns a random move choice
 	 */
 	public Move make_move(Board b) {
-		long start = System.currentTimeMillis();
-
-		Vector<Move> moves = b.get_possible_moves(self_id);
+		control.start_turn( self_id );
+		Move solved = book_move( b );
+		if ( solved == null )
+			solved = endgame_move( b );
+		if ( solved != null ) {
+			control.end_turn( self_id );
+			return solved;
+		}
+		clear_counters();
+		cutoffs = first_move_cutoffs = 0;
+		table.new_search();
+		table.clear_stats();
+		synchronized ( all_orderings ) {
+			for ( Move_Ordering o : all_orderings )
+				o.new_search();
+		}
+		long moves_start = System.nanoTime();
+		Vector<Move> moves = search_moves(b, self_id);
+		moves_nanos += System.nanoTime() - moves_start;
+		expanded++;
+		generated += moves.size();
 		Vector<Move> good_moves = new Vector<Move>();
 		// Increment to zero at start of loop
 		int depth = -1;
-		evaluated = 0;
-		int[] alphas = { LOSS, LOSS, LOSS, LOSS };
-		// Iterative deepening
-		while ( System.currentTimeMillis() - start < 1000 )
+		// Iterative deepening, depth 0 always runs so there is a move to return
+		while ( depth < 0 || control.next_depth_fits( generated / (double) Math.max( expanded, 1 ) ) )
 		{
 			depth += 1;
+			long depth_start = System.nanoTime();
+			int[][] evals = search_root( b, moves, depth );
+			// out of time, keep the last completed depth's moves
+			if ( evals == null ) {
+				depth -= 1;
+				break;
+			}
+			control.record_depth( System.nanoTime() - depth_start );
 			// new list of good moves
 			good_moves.removeAllElements();
 			int best = LOSS;
 			for ( int i=0 ; i < moves.size(); i++) {
 				// eval
-				int[] eval = eval_move( b, moves.get(i), depth, alphas);
+				int[] eval = evals[i];
 				int myScore = eval[self_id.ordinal()];
 				if ( myScore > best) {
 					best = myScore;
-					// reset alphas
-					alphas[ self_id.ordinal() ] = best;
 					good_moves.removeAllElements();
 					good_moves.add(moves.get(i) );
 				} else if( myScore == best ) {
@@ -56,51 +127,197 @@ public class AlphaBeta_Player extends MinMax_Player {
 			}
 			System.out.println("Depth: " + depth );
 			System.out.println("Evaluated: " + evaluated );
+			System.out.format("Cutoffs: %.1f%% of %d positions, %.1f%% on the first move\n",
+				100.0 * cutoffs / Math.max( expanded, 1 ), expanded,
+				100.0 * first_move_cutoffs / Math.max( cutoffs, 1 ) );
 			System.out.println("=====================================" );
 		}
+		count_path_cache( b );
+		report_search( depth );
+		if ( metrics != null )
+			metrics.record_cutoffs( getClass().getSimpleName(), expanded, cutoffs, first_move_cutoffs );
+		control.end_turn( self_id );
 		return good_moves.get(rng.nextInt(good_moves.size()));
 	}
 
 	/**
-	 * new move
+	 * Evaluates every root move to the given depth, in parallel when there is more than
+	 * one thread. The results are in the order of the moves, null when the search ran out
+	 * of time. Depth 0 always completes.
 	 */
-	public int[] eval_move(Board board, Move m, int depth, int[] alphas) {
-		evaluated += 1;
-		// use this one so the orignal isn't modified
-		//System.out.println( m );
-		// Generate target node
-		Board b = new Board( board );
-		b.apply_move( m );
-		// also copy alphas
-		int[] alpha = (int[]) alphas.clone() ;
-		// Should check for game over here
-
-		// Check for depth limit
-		if (depth == 0) {
-			return eval_board( b);
-		} //else
-
-		// Do minMax of kids
-		int[] eval = { LOSS, LOSS, LOSS, LOSS };
-		// get moves by next player
-		Player_ID p = next_player(m.getPlayer_making_move() );
-		Vector<Move> moves = b.get_possible_moves( p );
-		for ( int i=0; i < moves.size(); i++ ) {
-			int[] e = eval_move( b , moves.get(i), depth -1, alphas );
-			// Check if this move gives next player better pos
-			for ( int j=0; j < 4; j++) {
-				if ( j == p.ordinal() ) {
-					if( e[j] > eval[j] )
-						eval = e;
-				// other player
-				} else {
-					if ( e[j] > eval[j])
-					return eval;
+	private int[][] search_root(final Board b, final Vector<Move> moves, final int depth) {
+		final int[][] evals = new int[moves.size()][];
+		if ( threads == 1 ) {
+			long copy_start = System.nanoTime();
+			serial_board.copy_from( b );
+			serial_board.set_distance_cache( distance_cache );
+			serial.copy_nanos += System.nanoTime() - copy_start;
+			for ( int i=0 ; i < moves.size(); i++)
+				evals[i] = eval_root( serial, serial_board, moves.get(i), depth );
+			count_path_cache( serial_board );
+			collect( serial );
+			return depth > 0 && control.should_stop() ? null : evals;
+		}
+
+		if ( pool == null )
+			pool = new ForkJoinPool( threads );
+		Vector<Callable<Worker>> tasks = new Vector<Callable<Worker>>();
+		for ( int i=0 ; i < moves.size(); i++) {
+			final int index = i;
+			tasks.add( new Callable<Worker>() {
+				public Worker call() {
+					Worker w = new Worker();
+					long copy_start = System.nanoTime();
+					Board copy = new Board(b);
+					copy.set_distance_cache( distance_cache );
+					w.copy_nanos += System.nanoTime() - copy_start;
+					evals[index] = eval_root( w, copy, moves.get(index), depth );
+					w.path_hits += copy.get_path_cache_hits();
+					w.path_misses += copy.get_path_cache_misses();
+					return w;
 				}
+			});
+		}
+		try {
+			for ( Future<Worker> f : pool.invokeAll( tasks ) )
+				collect( f.get() );
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		} catch ( ExecutionException e ) {
+			throw new RuntimeException( e.getCause() );
+		}
+		return depth > 0 && control.should_stop() ? null : evals;
+	}
+
+	private int[] eval_root(Worker w, Board b, Move m, int depth) {
+		// the cutoffs of eval_children compare siblings only, so a root move needs no
+		// bound from the others and the workers share nothing but the table
+		int[] alphas = { LOSS, LOSS, LOSS, LOSS };
+		return w.eval_move( b, Move.pack( m ), depth, alphas );
+	}
 
+	/**
+	 * new move
+	 */
+	public int[] eval_move(Board board, int m, int depth, int[] alphas) {
+		int[] eval = serial.eval_move( board, m, depth, alphas );
+		collect( serial );
+		return eval;
+	}
+
+	/**
+	 * Adds a worker's counters to the turn's and clears them.
+	 */
+	private void collect(Worker w) {
+		evaluated += w.evaluated;
+		moves_nanos += w.moves_nanos;
+		eval_nanos += w.eval_nanos;
+		copy_nanos += w.copy_nanos;
+		expanded += w.expanded;
+		generated += w.generated;
+		cutoffs += w.cutoffs;
+		first_move_cutoffs += w.first_move_cutoffs;
+		path_hits += w.path_hits;
+		path_misses += w.path_misses;
+		w.evaluated = 0;
+		w.moves_nanos = w.eval_nanos = w.copy_nanos = 0;
+		w.expanded = w.generated = 0;
+		w.cutoffs = w.first_move_cutoffs = 0;
+		w.path_hits = w.path_misses = 0;
+	}
+
+	/**
+	 * The search below a root move. Each thread uses its own worker and board.
+	 */
+	class Worker {
+		// move lists below the root indexed by remaining depth, reused across nodes
+		private Move_List[] ply_moves = new Move_List[0];
+		int evaluated;
+		long moves_nanos, eval_nanos, copy_nanos;
+		long expanded, generated;
+		long cutoffs, first_move_cutoffs;
+		long path_hits, path_misses;
+		private final Move_Ordering ordering = orderings.get();
+		private final int[] stored = new int[4];
+
+		int[] eval_move(Board board, int m, int depth, int[] alphas) {
+			evaluated += 1;
+			// Generate target node on the same board, it is taken back before returning
+			//System.out.println( m );
+			board.apply_move( m );
+			int[] eval = eval_children( board, m, depth, alphas );
+			board.undo_move();
+			return eval;
+		}
+
+		private int[] eval_children(Board b, int m, int depth, int[] alphas) {
+			// Should check for game over here
+
+			// Check for depth limit
+			if (depth == 0) {
+				if ( metrics == null )
+					return eval_board( b);
+				long start = System.nanoTime();
+				int[] eval = eval_board( b);
+				eval_nanos += System.nanoTime() - start;
+				return eval;
+			} //else
+			// out of time, the depth is thrown away
+			if ( control.should_stop() )
+				return new int[] { LOSS, LOSS, LOSS, LOSS };
+
+			// Do minMax of kids
+			int[] eval = { LOSS, LOSS, LOSS, LOSS };
+			// get moves by next player
+			Player_ID p = next_player( Move.packed_player(m) );
+			if ( depth >= ply_moves.length )
+				ply_moves = Arrays.copyOf( ply_moves, depth + 1 );
+			if ( ply_moves[depth] == null )
+				ply_moves[depth] = new Move_List();
+			Move_List moves = ply_moves[depth];
+			if ( metrics != null ) {
+				long moves_start = System.nanoTime();
+				search_moves( b, p, moves );
+				moves_nanos += System.nanoTime() - moves_start;
+			} else
+				search_moves( b, p, moves );
+			expanded++;
+			generated += moves.size();
+			// the table only orders the moves, the scores of a cut off search are not exact
+			long key = b.get_zobrist_key();
+			long entry = table.probe( key, depth, stored );
+			int tt_move = entry != 0 ? Transposition_Table.get_best_move( entry ) : Transposition_Table.NO_MOVE;
+			ordering.order( b, moves, depth, tt_move );
+			int best_move = Transposition_Table.NO_MOVE;
+			for ( int i=0; i < moves.size(); i++ ) {
+				int[] e = eval_move( b , moves.get(i), depth -1, alphas );
+				// Check if this move gives next player better pos
+				for ( int j=0; j < 4; j++) {
+					if ( j == p.ordinal() ) {
+						if( e[j] > eval[j] ) {
+							eval = e;
+							best_move = moves.get(i);
+						}
+					// other player
+					} else {
+						if ( e[j] > eval[j]) {
+							cutoffs++;
+							if ( i == 0 )
+								first_move_cutoffs++;
+							ordering.cutoff( moves.get(i), depth );
+							if ( !control.should_stop() )
+								table.store( key, depth, eval, moves.get(i) );
+							return eval;
+						}
+					}
+
+				}
 			}
+			// a search cut short by the deadline is not stored
+			if ( !control.should_stop() )
+				table.store( key, depth, eval, best_move );
+			return eval;
 		}
-		return eval;
 	}
 
 	public int[] eval_board(Board b){
@@ -0,0 +1,287 @@
+package players;
+
+import game.Board;
+import game.Coordinate_Pair;
+import game.Move;
+import game.Move_List;
+
+import java.util.Random;
+
+/**
+ * Solves positions where no player has walls left. The walls can no longer change, so
+ * each player's goal distance map is fixed and the game is a race that pawns only
+ * affect when they stand next to each other, by blocking a step or being jumped.
+ *
+ * A position where the pawns cannot meet in a way that changes the race is solved by
+ * the distance maps alone: every player walks down its map and the first to arrive
+ * wins.
+ * Other positions are searched, every player takes a move that wins if there is one
+ * and otherwise its shortest step, until the pawns separate again. The search is
+ * bounded by a ply limit and a node budget, get_exact tells if the result did not
+ * depend on them.
+ */
+public class Endgame_Solver {
+	private static final int NODE_BUDGET = 1 << 16;
+	private static final int MAX_PLIES = 64;
+	private static final int TABLE_SIZE = 1 << 16;
+
+	// search results are packed as winner | exact << 2 | (move + 1) << 3
+	private static final int EXACT = 1 << 2;
+	private static final int ABORTED = -1;
+
+	private static Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, Player_ID.PLAYER_3, Player_ID.PLAYER_4};
+	// the board's key follows the last mover, a player without moves is skipped so the
+	// player to move is added to the key
+	private static final long[] MOVER_KEYS = new long[4];
+	static {
+		Random r = new Random(0x456e6467616d65L);
+		for(int i = 0; i < 4; i++)
+			MOVER_KEYS[i] = r.nextLong();
+	}
+
+	// results of searched positions, an entry is valid for the current generation only
+	private final long[] keys = new long[TABLE_SIZE];
+	private final int[] results = new int[TABLE_SIZE];
+	private final int[] generations = new int[TABLE_SIZE];
+	private int generation;
+
+	// move lists indexed by remaining plies
+	private final Move_List[] ply_moves = new Move_List[MAX_PLIES + 1];
+	private final int[] order = new int[32];
+	private long nodes;
+
+	private Player_ID winner;
+	private boolean exact;
+
+	/**
+	 * Is the position one the solver handles, no player has walls left.
+	 */
+	public static boolean applies(Board b){
+		for(int i = 0; i < 4; i++){
+			if(b.get_wall_count(players_ids[i]) > 0)
+				return false;
+		}
+		return !b.is_game_over();
+	}
+
+	/**
+	 * Finds the move of the player to move.
+	 *
+	 * @param b - a position where applies is true, restored before returning
+	 * @param p - the player to move
+	 * @return the move packed with Move.pack, Transposition_Table.NO_MOVE if the player
+	 *         has none
+	 */
+	public int solve(Board b, Player_ID p){
+		nodes = 0;
+		generation++;
+		int step = shortest_step(b, p.ordinal());
+		int result = race(b, p.ordinal()) | (step + 1) << 3;
+		exact = !interacts(b, p.ordinal());
+		// deepen until the result does not depend on the ply limit
+		for(int plies = 4; !exact && plies <= MAX_PLIES; plies += 4){
+			int r = search(b, p.ordinal(), plies);
+			if(r == ABORTED)
+				break;
+			result = r;
+			exact = (r & EXACT) != 0;
+		}
+		winner = players_ids[result & 3];
+		return (result >>> 3) - 1;
+	}
+
+	/**
+	 * The winner of the last solved position.
+	 */
+	public Player_ID get_winner(){
+		return winner;
+	}
+
+	/**
+	 * Was the last position solved exactly, false if the search ran out of plies or
+	 * nodes and the winner is the one of the race at the limit.
+	 */
+	public boolean get_exact(){
+		return exact;
+	}
+
+	/**
+	 * Positions searched for the last solve.
+	 */
+	public long get_nodes(){
+		return nodes;
+	}
+
+	private int search(Board b, int p, int plies){
+		if(++nodes > NODE_BUDGET)
+			return ABORTED;
+		if(!interacts(b, p))
+			return race(b, p) | EXACT;
+		if(plies == 0)
+			return race(b, p);
+
+		long key = b.get_zobrist_key() ^ MOVER_KEYS[p];
+		int slot = (int)(key ^ (key >>> 32)) & (TABLE_SIZE - 1);
+		if(generations[slot] == generation && keys[slot] == key){
+			int stored = results[slot];
+			// an exact result holds at any depth, the rest only at the depth searched
+			if((stored & EXACT) != 0 || (stored >>> 24) >= plies)
+				return stored & 0xFFFFFF;
+		}
+
+		if(ply_moves[plies] == null)
+			ply_moves[plies] = new Move_List();
+		Move_List moves = ply_moves[plies];
+		b.get_possible_moves(players_ids[p], moves);
+		int result;
+		if(moves.size() == 0){
+			// the player is skipped
+			int r = search(b, (p + 1) % 4, plies - 1);
+			if(r == ABORTED)
+				return ABORTED;
+			result = r & (3 | EXACT);
+		}
+		else{
+			sort_by_distance(b, p, moves);
+			result = ABORTED;
+			boolean all_exact = true;
+			for(int i = 0; i < moves.size(); i++){
+				int m = moves.get(i);
+				int r;
+				if(b.get_goal_distance(players_ids[p], Move.packed_row(m), Move.packed_col(m)) == 0){
+					r = p | EXACT;
+				}
+				else{
+					b.apply_move(m);
+					r = search(b, (p + 1) % 4, plies - 1);
+					b.undo_move();
+					if(r == ABORTED)
+						return ABORTED;
+				}
+				all_exact &= (r & EXACT) != 0;
+				// a winning move ends the search, otherwise the shortest step is kept
+				if((r & 3) == p){
+					result = (r & (3 | EXACT)) | (m + 1) << 3;
+					break;
+				}
+				if(i == 0)
+					result = (r & 3) | (m + 1) << 3;
+				if(i == moves.size() - 1 && all_exact)
+					result |= EXACT;
+			}
+		}
+
+		keys[slot] = key;
+		results[slot] = result | plies << 24;
+		generations[slot] = generation;
+		return result;
+	}
+
+	/**
+	 * The winner of the race from the position, the first player to walk down its
+	 * distance map to the goal when nobody is in the way and no more walls are placed.
+	 *
+	 * @param b
+	 * @param p - the player to move
+	 */
+	public static Player_ID race_winner(Board b, Player_ID p){
+		return players_ids[race(b, p.ordinal())];
+	}
+
+	// race_winner as an index
+	private static int race(Board b, int p){
+		int best = p;
+		int first = Integer.MAX_VALUE;
+		for(int i = 0; i < 4; i++){
+			int arrival = arrival(b, p, i);
+			if(arrival < first){
+				first = arrival;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * The player's move that gets closest to its goal, NO_MOVE if it has none.
+	 */
+	private int shortest_step(Board b, int p){
+		if(ply_moves[0] == null)
+			ply_moves[0] = new Move_List();
+		Move_List moves = ply_moves[0];
+		b.get_possible_moves(players_ids[p], moves);
+		if(moves.size() == 0)
+			return Transposition_Table.NO_MOVE;
+		sort_by_distance(b, p, moves);
+		return moves.get(0);
+	}
+
+	/**
+	 * Can the pawns change the race's winner. Until two pawns first stand next to each
+	 * other every move covers one cell, so pawns further apart than their moves before
+	 * the race ends never meet. Pawns that may meet change nothing when the winner is
+	 * not one of them and none of them can arrive first, even jumping every move.
+	 */
+	private boolean interacts(Board b, int p){
+		int winner = race(b, p);
+		int end = arrival(b, p, winner);
+		for(int i = 0; i < 4; i++){
+			Coordinate_Pair a = b.get_player_location(players_ids[i]);
+			for(int j = i + 1; j < 4; j++){
+				Coordinate_Pair c = b.get_player_location(players_ids[j]);
+				int apart = Math.abs(a.row() - c.row()) + Math.abs(a.col() - c.col());
+				if(apart - moves_before(p, i, end) - moves_before(p, j, end) > 1)
+					continue;
+				if(i == winner || j == winner)
+					return true;
+				if(jumping_arrival(b, p, i) <= end || jumping_arrival(b, p, j) <= end)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	// ply, counted from player p's move, of player i's arrival when nobody is in the way
+	private static int arrival(Board b, int p, int i){
+		Coordinate_Pair at = b.get_player_location(players_ids[i]);
+		int d = b.get_goal_distance(players_ids[i], at.row(), at.col());
+		return (i - p + 4) % 4 + 4 * (d - 1);
+	}
+
+	// earliest ply player i can arrive, a jump or a diagonal move covers two cells
+	private int jumping_arrival(Board b, int p, int i){
+		Coordinate_Pair at = b.get_player_location(players_ids[i]);
+		int d = b.get_goal_distance(players_ids[i], at.row(), at.col());
+		return (i - p + 4) % 4 + 4 * ((d + 1) / 2 - 1);
+	}
+
+	// moves player i makes before the ply, counted from player p's move
+	private static int moves_before(int p, int i, int ply){
+		int first = (i - p + 4) % 4;
+		return ply > first ? (ply - first + 3) / 4 : 0;
+	}
+
+	/**
+	 * Sorts the moves by the player's goal distance after them, keeping the generation
+	 * order between equal distances.
+	 */
+	private void sort_by_distance(Board b, int p, Move_List moves){
+		int n = Math.min(moves.size(), order.length);
+		for(int i = 0; i < n; i++){
+			int m = moves.get(i);
+			order[i] = b.get_goal_distance(players_ids[p], Move.packed_row(m), Move.packed_col(m));
+		}
+		for(int i = 1; i < n; i++){
+			int m = moves.get(i);
+			int d = order[i];
+			int j = i - 1;
+			while(j >= 0 && order[j] > d){
+				order[j + 1] = order[j];
+				moves.set(j + 1, moves.get(j));
+				j--;
+			}
+			order[j + 1] = d;
+			moves.set(j + 1, m);
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package players;
+
+import game.Metrics;
+
+/**
+ * A player that reports its search measurements, see game.Metrics.
+ */
+public interface Instrumented {
+	/**
+	 * Sets where the player reports, null turns reporting off.
+	 */
+	public void set_metrics(Metrics metrics);
+}
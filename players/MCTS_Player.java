@@ -0,0 +1,408 @@
+package players;
+
+import game.Board;
+import game.Distance_Cache;
+import game.Metrics;
+import game.Move;
+import game.Move_List;
+import game.Search_Control;
+
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A player that uses Monte Carlo tree search (UCT) for the game of Quoridor.
+ *
+ * Every iteration walks down the tree choosing children by UCT, expands the leaf with
+ * the moves of Board.get_relevant_moves and plays the game out with a Playout_Policy.
+ *
+ * The tree is shared by the searching threads, tree parallel. A thread passing a child
+ * adds a virtual loss to it until its playout is counted, so the other threads spread
+ * over other moves. The thread count defaults to the mcts.threads system property,
+ * 1 searches on the calling thread. The subtree of the moves played is kept for the
+ * next turn.
+ */
+public class MCTS_Player implements Player, Instrumented, Time_Managed {
+	private static Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, Player_ID.PLAYER_3, Player_ID.PLAYER_4};
+
+	// exploration constant of UCT, rewards are 0 or 1
+	private static final double EXPLORATION = 0.7;
+	// a tie shares the win
+	private static final double TIE_REWARD = 0.25;
+
+	private Random rng;
+	private Player_ID self_id;
+	private boolean debug = false;
+	private Metrics metrics;
+	// turn deadlines, replaced by the game's when it has one
+	private Search_Control control = new Search_Control(1995);
+	// plays the positions where nobody has walls left and the result is proven
+	private Endgame_Solver endgame = new Endgame_Solver();
+	// distance maps of the wall configurations played out, shared by the search players
+	private Distance_Cache distance_cache = Distance_Cache.shared();
+
+	private int threads;
+	// runs the searches of every thread but the calling one, created on the first move
+	private ThreadPoolExecutor pool;
+	private Searcher[] searchers;
+
+	// the tree of the current position, null when there is none to reuse
+	private Node root;
+	private long root_key;
+	private final Board root_board = new Board();
+
+	/**
+	 * A position of the tree, reached by a move. A node's children and the counters of
+	 * its children are guarded by the node's lock.
+	 */
+	static class Node {
+		// the move reaching the node and its player
+		final int move;
+		final int mover;
+		// null until the node is expanded, empty when nobody can move
+		Node[] children;
+		int visits;
+		// playouts won by the mover
+		double wins;
+		// threads that passed the node and have not counted their playout yet
+		int virtual_loss;
+
+		Node(int move, int mover){
+			this.move = move;
+			this.mover = mover;
+		}
+	}
+
+	public MCTS_Player(){
+		this(Integer.getInteger("mcts.threads", 1));
+	}
+
+	public MCTS_Player(int threads){
+		rng = new Random();
+		set_threads(threads);
+	}
+
+	/**
+	 * Sets the number of threads searching the tree.
+	 */
+	public void set_threads(int threads){
+		this.threads = Math.max(threads, 1);
+		if ( pool != null ) {
+			pool.shutdown();
+			pool = null;
+		}
+		searchers = new Searcher[this.threads];
+		for ( int i = 0; i < this.threads; i++ )
+			searchers[i] = new Searcher();
+	}
+
+	public void set_search_control(Search_Control control){
+		control.adopt_move_budget( self_id, this.control );
+		this.control = control;
+	}
+
+	/**
+	 * Sets the distance map cache of the search boards, null to repair the maps on every
+	 * wall. Defaults to Distance_Cache.shared().
+	 */
+	public void set_distance_cache(Distance_Cache cache){
+		distance_cache = cache;
+	}
+
+	/**
+	 * sets where search measurements are reported
+	 */
+	public void set_metrics(Metrics metrics){
+		this.metrics = metrics;
+	}
+
+	public void set_debug(boolean debug){
+		this.debug = debug;
+	}
+
+	public void set_id(Player_ID id){
+		self_id = id;
+		root = null;
+	}
+
+	public void set_seed(long seed){
+		rng = new Random(seed);
+	}
+
+	public Move make_move(Board b){
+		control.start_turn( self_id );
+		if ( Endgame_Solver.applies( b ) ) {
+			int m = endgame.solve( b, self_id );
+			// an unproven result is only the race at the solver's limit, search instead
+			if ( m != Transposition_Table.NO_MOVE && endgame.get_exact() ) {
+				root = null;
+				control.end_turn( self_id );
+				return Move.unpack( m );
+			}
+		}
+
+		root_board.copy_from( b );
+		if ( root == null || root_key != b.get_zobrist_key() || root.children == null ) {
+			// the player before this one, the root's children are this player's moves
+			root = new Node( Transposition_Table.NO_MOVE, (self_id.ordinal() + 3) % 4 );
+			root_key = b.get_zobrist_key();
+			searchers[0].expand( root, root_board );
+		}
+		int reused = root.visits;
+
+		long iterations = 0;
+		int max_depth = 0;
+		long path_hits = 0, path_misses = 0;
+		if ( root.children.length > 1 ) {
+			for ( int i = 0; i < threads; i++ )
+				searchers[i].start( rng.nextLong() );
+			run_searchers();
+			for ( int i = 0; i < threads; i++ ) {
+				iterations += searchers[i].iterations;
+				max_depth = Math.max( max_depth, searchers[i].max_depth );
+				path_hits += searchers[i].path_hits;
+				path_misses += searchers[i].path_misses;
+			}
+		}
+
+		// the most played move is the most trusted one
+		Node best = root.children[0];
+		for ( Node child : root.children ) {
+			if ( child.visits > best.visits )
+				best = child;
+		}
+		if ( debug ) {
+			System.out.println( "*************************************" );
+			for ( Node child : root.children ) {
+				if ( child.visits > 0 )
+					System.out.format( "%6d %.3f %s\n", child.visits, child.wins / child.visits, Move.unpack( child.move ) );
+			}
+			System.out.format( "Iterations: %d on %d threads, %d reused, depth %d\n", iterations, threads, reused, max_depth );
+			System.out.println( "=====================================" );
+		}
+		if ( metrics != null ) {
+			metrics.record_search( getClass().getSimpleName(), iterations, max_depth, root.children.length );
+			metrics.record_cache( getClass().getSimpleName(), path_hits + root_board.get_path_cache_hits(),
+					path_misses + root_board.get_path_cache_misses() );
+		}
+
+		Move move = Move.unpack( best.move );
+		root_board.apply_move( best.move );
+		advance( best.move, root_board.get_zobrist_key() );
+		control.end_turn( self_id );
+		return move;
+	}
+
+	public void notify_of_move(Player_ID player_that_made_move, Move move_made, Board resulting_board){
+		advance( Move.pack( move_made ), resulting_board.get_zobrist_key() );
+	}
+
+	/**
+	 * Moves the root to the child of the move played, dropping the rest of the tree.
+	 */
+	private void advance(int move, long key){
+		Node next = null;
+		if ( root != null && root.children != null ) {
+			for ( Node child : root.children ) {
+				if ( child.move == move )
+					next = child;
+			}
+		}
+		root = next;
+		root_key = key;
+	}
+
+	/**
+	 * Runs the searchers until the turn's deadline, the first on the calling thread and
+	 * the rest on the pool. They poll the control after every playout so all of them
+	 * have returned when this does.
+	 */
+	private void run_searchers(){
+		if ( threads > 1 && pool == null ) {
+			pool = new ThreadPoolExecutor( threads - 1, threads - 1, 10, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread( r, "MCTS search" );
+					t.setDaemon( true );
+					return t;
+				}
+			});
+			// players that are done don't keep threads
+			pool.allowCoreThreadTimeOut( true );
+		}
+		Vector<Future<?>> futures = new Vector<Future<?>>();
+		for ( int i = 1; i < threads; i++ )
+			futures.add( pool.submit( searchers[i] ) );
+		searchers[0].run();
+		boolean interrupted = false;
+		for ( Future<?> f : futures ) {
+			while ( true ) {
+				try {
+					f.get();
+					break;
+				} catch ( InterruptedException e ) {
+					// still wait for the searcher, it stops after its playout
+					control.stop();
+					interrupted = true;
+				} catch ( ExecutionException e ) {
+					throw new RuntimeException( e.getCause() );
+				}
+			}
+		}
+		if ( interrupted )
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * The moves of a tree position, those of the first player after the mover that has
+	 * one. Only walls that touch a shortest path are tried, see Board.get_relevant_moves.
+	 *
+	 * @param b
+	 * @param mover - the player whose move reached the position
+	 * @param moves - receives the moves, empty when nobody can move
+	 * @return the player to move, -1 when nobody can move
+	 */
+	static int tree_moves(Board b, int mover, Move_List moves){
+		for ( int k = 1; k <= 4; k++ ) {
+			int p = (mover + k) % 4;
+			b.get_relevant_moves( players_ids[p], moves );
+			if ( moves.size() == 0 )
+				b.get_possible_moves( players_ids[p], moves );
+			if ( moves.size() > 0 )
+				return p;
+		}
+		return -1;
+	}
+
+	/**
+	 * The search state of one thread, its own board and playout lists.
+	 */
+	class Searcher implements Runnable {
+		private final Board b = new Board();
+		private final Move_List moves = new Move_List();
+		private final Playout_Policy policy = new Playout_Policy();
+		private Node[] path = new Node[64];
+		long iterations;
+		int max_depth;
+		// goal path cache counters of the board's copies this turn
+		long path_hits, path_misses;
+
+		void start(long seed){
+			policy.set_seed( seed );
+			b.set_distance_cache( distance_cache );
+			iterations = 0;
+			max_depth = 0;
+			path_hits = path_misses = 0;
+			// clears the board's counters of the last turn
+			b.copy_from( root_board );
+		}
+
+		public void run(){
+			while ( !control.should_stop() ) {
+				iterate();
+				iterations++;
+			}
+			count_path_cache();
+		}
+
+		// adds the board's counters before they are cleared by a copy
+		private void count_path_cache(){
+			path_hits += b.get_path_cache_hits();
+			path_misses += b.get_path_cache_misses();
+		}
+
+		/**
+		 * One selection, expansion, playout and update.
+		 */
+		private void iterate(){
+			count_path_cache();
+			b.copy_from( root_board );
+			Node node = root;
+			int depth = 0;
+			path[0] = node;
+			boolean expand = true;
+			while ( expand && !b.is_game_over() ) {
+				Node child;
+				synchronized ( node ) {
+					if ( node.children == null )
+						expand( node, b );
+					if ( node.children.length == 0 )
+						break;
+					child = select( node );
+					// a child is expanded on its second visit
+					expand = child.visits > 0;
+					child.virtual_loss++;
+				}
+				b.apply_move( child.move );
+				if ( ++depth == path.length ) {
+					Node[] longer = new Node[path.length * 2];
+					System.arraycopy( path, 0, longer, 0, path.length );
+					path = longer;
+				}
+				path[depth] = child;
+				node = child;
+			}
+			max_depth = Math.max( max_depth, depth );
+
+			int winner = policy.play( b, (node.mover + 1) % 4 );
+			for ( int i = depth; i > 0; i-- ) {
+				Node n = path[i];
+				synchronized ( path[i - 1] ) {
+					n.visits++;
+					n.virtual_loss--;
+					if ( winner == n.mover )
+						n.wins += 1;
+					else if ( winner < 0 )
+						n.wins += TIE_REWARD;
+				}
+			}
+			synchronized ( root ) {
+				root.visits++;
+			}
+		}
+
+		/**
+		 * The child with the best upper confidence bound, counting the virtual losses as
+		 * lost playouts. The caller holds the node's lock.
+		 */
+		private Node select(Node node){
+			int total = 0;
+			for ( Node child : node.children )
+				total += child.visits + child.virtual_loss;
+			double log_total = Math.log( total + 1 );
+			Node best = null;
+			double best_score = Double.NEGATIVE_INFINITY;
+			for ( Node child : node.children ) {
+				int n = child.visits + child.virtual_loss;
+				// untried moves first, in generation order
+				if ( n == 0 )
+					return child;
+				double score = child.wins / n + EXPLORATION * Math.sqrt( log_total / n );
+				if ( score > best_score ) {
+					best_score = score;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Adds the children of a node, the moves of the first player after the node's
+		 * mover that has one. The caller holds the node's lock.
+		 */
+		void expand(Node node, Board board){
+			int p = tree_moves( board, node.mover, moves );
+			Node[] children = new Node[moves.size()];
+			for ( int i = 0; i < children.length; i++ )
+				children[i] = new Node( moves.get(i), p );
+			node.children = children;
+		}
+
+	}
+}
@@ -1,15 +1,27 @@
 package players;
 
 import game.Board;
+import game.Distance_Cache;
+import game.Metrics;
 import game.Move;
+import game.Move_List;
+import game.Search_Control;
 
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A player that uses MinMax really max n for the game of Quoridor.
  */
-public class MinMax_Player implements Player {
+public class MinMax_Player implements Player, Instrumented, Time_Managed {
 	protected Random rng;
 	protected Player_ID self_id;
 	protected static Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, Player_ID.PLAYER_3, Player_ID.PLAYER_4};
@@ -20,7 +32,30 @@ public class MinMax_Player implements Player {
 
 	// number of board evaluated
 	protected int evaluated = 0;
+	// where a turn's time goes, reported to metrics at the end of make_move
+	protected Metrics metrics;
+	protected long moves_nanos, eval_nanos, copy_nanos;
+	// positions expanded and the moves generated for them
+	protected long expanded, generated;
+	// goal path cache counters of the boards searched, see count_path_cache
+	protected long path_hits, path_misses;
+	// positions searched by earlier depths and turns, see eval_children
+	protected Transposition_Table table = new Transposition_Table();
 	protected boolean debug = false;
+	// turn deadlines, replaced by the game's when it has one
+	protected Search_Control control = new Search_Control(1995);
+	// runs the searches of every turn, created on the first move
+	private ThreadPoolExecutor worker;
+	// move lists below the root indexed by remaining depth, reused across nodes and turns
+	private Move_List[] ply_moves = new Move_List[0];
+	// plays the positions where nobody has walls left and the result is proven
+	protected Endgame_Solver endgame = new Endgame_Solver();
+	// moves for the opening positions, null without a book
+	protected Opening_Book book = Opening_Book.load( System.getProperty( "opening.book", Opening_Book.DEFAULT_FILE ) );
+	// search only the walls that touch a shortest path, see Board.get_relevant_moves
+	protected boolean relevant_walls = Boolean.getBoolean("search.relevant_walls");
+	// distance maps of the wall configurations searched, shared by the search players
+	protected Distance_Cache distance_cache = Distance_Cache.shared();
 	/**
 	 * The player, whose turn it is next.
 	 */
@@ -39,52 +74,172 @@ public class MinMax_Player implements Player {
 		debug = debug_val;
 	}
 
+	/**
+	 * Search only the walls that touch a player's shortest path instead of every legal
+	 * wall. Defaults to the search.relevant_walls system property.
+	 */
+	public void set_relevant_walls(boolean relevant_walls){
+		this.relevant_walls = relevant_walls;
+	}
+
+	/**
+	 * The moves the search tries for a player.
+	 */
+	protected Vector<Move> search_moves(Board b, Player_ID p){
+		return relevant_walls ? b.get_relevant_moves(p) : b.get_possible_moves(p);
+	}
+
+	protected void search_moves(Board b, Player_ID p, Move_List moves){
+		if ( relevant_walls )
+			b.get_relevant_moves( p, moves );
+		else
+			b.get_possible_moves( p, moves );
+	}
+
+	public void set_search_control(Search_Control control){
+		control.adopt_move_budget( self_id, this.control );
+		this.control = control;
+	}
+
+	/**
+	 * Sets the distance map cache of the search boards, null to repair the maps on every
+	 * wall. Defaults to Distance_Cache.shared().
+	 */
+	public void set_distance_cache(Distance_Cache cache){
+		distance_cache = cache;
+	}
+
+	/**
+	 * Sets the book consulted before searching, null to always search. Defaults to the
+	 * file named by the opening.book system property, opening.book if it is not set.
+	 */
+	public void set_opening_book(Opening_Book book){
+		this.book = book;
+	}
+
+	/**
+	 * The book move of the position, null if it is not in the book.
+	 */
+	protected Move book_move(Board b){
+		if ( book == null )
+			return null;
+		int rotation = b.get_canonical_rotation();
+		int m = book.get_move( b.get_rotated_key( rotation ), rng );
+		if ( m == Transposition_Table.NO_MOVE )
+			return null;
+		m = Board.unrotate_move( m, rotation );
+		// a diagonal step of the canonical form may not be one here, see get_rotated_key
+		if ( Move.packed_player( m ) != self_id || !b.apply_move( m ) )
+			return null;
+		b.undo_move();
+		if ( debug )
+			System.out.println( "Book move" );
+		return Move.unpack( m );
+	}
+
+	/**
+	 * The endgame solver's move when no player has walls left and the solver proved
+	 * its result, null otherwise so the position is searched as usual.
+	 */
+	protected Move endgame_move(Board b){
+		if ( !Endgame_Solver.applies( b ) )
+			return null;
+		int m = endgame.solve( b, self_id );
+		if ( debug )
+			System.out.format( "Endgame: %s wins%s, %d positions\n", endgame.get_winner(),
+					endgame.get_exact() ? "" : " (not proven, searching)", endgame.get_nodes() );
+		if ( m == Transposition_Table.NO_MOVE || !endgame.get_exact() )
+			return null;
+		return Move.unpack( m );
+	}
+
+	/**
+	 * sets where search measurements are reported
+	 */
+	public void set_metrics(Metrics metrics){
+		this.metrics = metrics;
+	}
+
+	protected void clear_counters() {
+		evaluated = 0;
+		moves_nanos = eval_nanos = copy_nanos = 0;
+		expanded = generated = 0;
+		path_hits = path_misses = 0;
+	}
+
+	/**
+	 * Adds the goal path cache counters of a board used this turn, before the board is
+	 * copied over or dropped since copying clears them.
+	 */
+	protected void count_path_cache(Board board) {
+		path_hits += board.get_path_cache_hits();
+		path_misses += board.get_path_cache_misses();
+	}
+
+	/**
+	 * Reports the counters of a turn that reached the given depth.
+	 */
+	protected void report_search(int depth) {
+		if ( metrics == null )
+			return;
+		String name = getClass().getSimpleName();
+		metrics.record_search( name, evaluated, depth, expanded == 0 ? 0 : generated / (double) expanded );
+		metrics.record_operation( name, Metrics.Operation.POSSIBLE_MOVES, moves_nanos );
+		metrics.record_operation( name, Metrics.Operation.SHORTEST_PATH, eval_nanos );
+		metrics.record_operation( name, Metrics.Operation.BOARD_COPY, copy_nanos );
+		metrics.record_cache( name, path_hits, path_misses );
+	}
+
 
 	/**
 	 * returns a random move choice
 	 */
 	public Move make_move(Board b) {
 		long start = System.currentTimeMillis();
+		control.start_turn( self_id );
+		Move solved = book_move( b );
+		if ( solved == null )
+			solved = endgame_move( b );
+		if ( solved != null ) {
+			control.end_turn( self_id );
+			return solved;
+		}
 
-		Vector<Move> moves = b.get_possible_moves(self_id);
+		Vector<Move> moves = search_moves(b, self_id);
 		Vector<Move> good_moves = (Vector)moves.clone();
 		// Increment to zero at start of loop
 		int depth = 0; // 0
 		int max_depth = 99;
-		int MAX_TIME = 1995; // in milliseconds
-		evaluated = 0; // debuging number of nodes evaluated
+		clear_counters(); // debuging number of nodes evaluated
+		table.new_search();
+		table.clear_stats();
 		if ( b.get_wall_count( self_id ) == 0 )
 			max_depth = 1;
-		// Iterative deepening
-		while ( System.currentTimeMillis() - start < MAX_TIME && depth < max_depth )
+		// every depth searches the same copy, moves are taken back as the search returns
+		long copy_start = System.nanoTime();
+		Board copy = new Board(b);
+		copy.set_distance_cache( distance_cache );
+		copy_nanos += System.nanoTime() - copy_start;
+		// Iterative deepening, a depth is only started when it is expected to finish
+		while ( depth < max_depth && control.next_depth_fits( generated / (double) Math.max( expanded, 1 ) ) )
 		{
 			depth += 1; // 1
 			Vector<Move> returned_moves = new Vector<Move>();
-			try {
-				MinMaxThread _mx = new MinMaxThread(returned_moves, new Board(b), depth );
-				_mx.start();
-				synchronized (_mx) {
-					long time_left = MAX_TIME - (System.currentTimeMillis() - start);
-					if ( time_left > 0) // unlikelly to be false but it throws an exception if it is
-						_mx.join( time_left );
-					// we are out of time
-					if ( _mx.isAlive() ) { 
-						_mx.interrupt();
-						depth -= 1; // didn't complete this level
-						break;
-					}
-					else {
-						if ( debug ) {
-							System.out.println("Depth " + depth + ": " + returned_moves.size() +  " moves" );
-						}
-						// there are no good moves left ( Probally means we loose no matter what )
-						if (returned_moves.size() == 0 ) {
-							break;
-						}
-						good_moves = (Vector)returned_moves.clone();
-					}
-				}
-			} catch (InterruptedException e ) { }
+			long depth_start = System.nanoTime();
+			MinMaxSearch search = new MinMaxSearch(returned_moves, copy, depth );
+			if ( !run_search( search ) ) {
+				depth -= 1; // didn't complete this level
+				break;
+			}
+			if ( debug ) {
+				System.out.println("Depth " + depth + ": " + returned_moves.size() +  " moves" );
+			}
+			// there are no good moves left ( Probally means we loose no matter what )
+			if (returned_moves.size() == 0 ) {
+				break;
+			}
+			good_moves = (Vector)returned_moves.clone();
+			control.record_depth( System.nanoTime() - depth_start );
 		}
 		
 		if ( debug ){
@@ -96,21 +251,73 @@ public class MinMax_Player implements Player {
 			System.out.println("Depth compleated: " + depth );
 			System.out.format("Evaluated: %d %.0f eval/sec\n",  evaluated , 
 				evaluated / ((System.currentTimeMillis() -start) / 1000.0 ) );
+			System.out.format("Table hit/miss/collision: %d/%d/%d\n",
+				table.get_hits(), table.get_misses(), table.get_collisions() );
+			if ( distance_cache != null )
+				System.out.format("Distance cache hit/miss: %d/%d, %d walls\n",
+					distance_cache.get_hits(), distance_cache.get_misses(), distance_cache.size() );
 			System.out.println("=====================================" );
 		}
+		count_path_cache( b );
+		count_path_cache( copy );
+		report_search( depth );
+		control.end_turn( self_id );
 		return good_moves.get(rng.nextInt(good_moves.size()));
 	}
 
-	class MinMaxThread extends Thread {
+	/**
+	 * Runs a search on the player's worker thread and waits for it. Past the deadline
+	 * the search is told to stop and is waited for again, it polls the control so it
+	 * returns within a node, so no search work outlives the turn.
+	 *
+	 * @return true if the search completed
+	 */
+	private boolean run_search(MinMaxSearch search) {
+		if ( worker == null ) {
+			worker = new ThreadPoolExecutor( 1, 1, 10, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread( r, "MinMax search" );
+					t.setDaemon( true );
+					return t;
+				}
+			});
+			// players that are done don't keep a thread
+			worker.allowCoreThreadTimeOut( true );
+		}
+		Future<?> f = worker.submit( search );
+		try {
+			try {
+				f.get( control.time_left(), TimeUnit.NANOSECONDS );
+			} catch ( TimeoutException e ) {
+				control.stop();
+				f.get();
+			}
+		} catch ( InterruptedException e ) {
+			// still wait for the search, it stops at its next node
+			control.stop();
+			while ( !f.isDone() )
+				Thread.yield();
+			Thread.currentThread().interrupt();
+		} catch ( ExecutionException e ) {
+			throw new RuntimeException( e.getCause() );
+		}
+		return search.complete;
+	}
+
+	class MinMaxSearch implements Runnable {
 		Vector<Move> best_moves;
 		Board b;
 		int depth;
-//		int evaluated;
+		// set when every root move was searched before the deadline
+		volatile boolean complete;
 
-		public MinMaxThread( Vector<Move> ret, Board board, int d) {
+		public MinMaxSearch( Vector<Move> ret, Board board, int d) {
 			this.best_moves = ret;
 			this.b = board;
 			this.depth = d;
+			if ( ply_moves.length < d + 1 )
+				ply_moves = Arrays.copyOf( ply_moves, d + 1 );
 		}
 
 		
@@ -118,16 +325,20 @@ public class MinMax_Player implements Player {
 			// new list of good moves
 			int best = LOSS;
 			best_moves.removeAllElements();
-			Vector<Move> moves = b.get_possible_moves(self_id);
+			long moves_start = System.nanoTime();
+			Vector<Move> moves = search_moves(b, self_id);
+			moves_nanos += System.nanoTime() - moves_start;
+			expanded++;
+			generated += moves.size();
 			if ( debug )  {
 				System.out.format( "Depth: %d\n", depth );
 				System.out.format( "Total Moves: %d\n", moves.size() );
 			}
 				
-			for ( int i=0 ; !isInterrupted() && i < moves.size(); i++) {
+			for ( int i=0 ; !control.should_stop() && i < moves.size(); i++) {
 				// eval
-				int[] this_eval = eval_board( b );
-				int[] eval = eval_move( b, moves.get(i), depth -1, this_eval );
+				int[] this_eval = timed_eval_board( b );
+				int[] eval = eval_move( b, Move.pack( moves.get(i) ), depth -1, this_eval );
 				int myScore = eval[self_id.ordinal()];
 				if ( myScore > best) {
 					if ( debug ) {
@@ -147,20 +358,25 @@ public class MinMax_Player implements Player {
 					}
 				}
 			}
+			complete = !control.should_stop();
 		}
 
 		/**
 		 * new move
 		 */
-		public int[] eval_move(Board board, Move m, int depth, int [] old_eval) {
-			// use this one so the orignal isn't modified
+		public int[] eval_move(Board board, int m, int depth, int [] old_eval) {
+			// Generate target node on the same board, it is taken back before returning
 			//System.out.println( m );
-			// Generate target node
+			board.apply_move( m );
+			int[] eval = eval_children( board, m, depth, old_eval );
+			board.undo_move();
+			return eval;
+		}
+
+		private int[] eval_children(Board b, int m, int depth, int [] old_eval) {
 			int[] alpha = { LOSS -1 , LOSS -1, LOSS -1, LOSS -1 };
-			Player_ID me = m.getPlayer_making_move();
-			Board b = new Board( board );
-			b.apply_move( m );
-			int [] this_eval = eval_board(b);
+			Player_ID me = Move.packed_player(m);
+			int [] this_eval = timed_eval_board(b);
 			// If I haven't made things better that was a stupid move
 			// checks for game over here
 			if ( this_eval[me.ordinal()] <= old_eval[me.ordinal()] ) {
@@ -172,34 +388,80 @@ public class MinMax_Player implements Player {
 			if (depth == 0) {
 				return this_eval;
 			} //else 
+			// out of time, the depth is thrown away
+			if ( control.should_stop() )
+				return alpha;
+
+			// The value below here only depends on the position and depth, so a
+			// result from another move order, depth or turn can be reused
+			long key = b.get_zobrist_key();
+			int[] stored = new int[4];
+			long entry = table.probe( key, depth, stored );
+			if ( entry != 0 && Transposition_Table.get_depth( entry ) >= depth ) {
+				return stored;
+			}
+			int best_code = entry != 0 ? Transposition_Table.get_best_move( entry ) : Transposition_Table.NO_MOVE;
 
 			// Do minMax of kids
 			// get moves by next player
-			Player_ID p = next_player(m.getPlayer_making_move() );
-			Vector<Move> moves = b.get_possible_moves( p );
-			// TODO: sort moves forward move first
+			Player_ID p = next_player( me );
+			if ( ply_moves[depth] == null )
+				ply_moves[depth] = new Move_List();
+			Move_List moves = ply_moves[depth];
+			if ( metrics != null ) {
+				long moves_start = System.nanoTime();
+				search_moves( b, p, moves );
+				moves_nanos += System.nanoTime() - moves_start;
+			} else
+				search_moves( b, p, moves );
+			expanded++;
+			generated += moves.size();
+			// try the best move of an earlier search first
 			// Move are done before walls in get_possiable_moves
+			if ( best_code != Transposition_Table.NO_MOVE ) {
+				for ( int i=1; i < moves.size(); i++ ) {
+					if ( moves.get(i) == best_code ) {
+						moves.move_to_front(i);
+						break;
+					}
+				}
+			}
+			int best_move = Transposition_Table.NO_MOVE;
 			for ( int i=0; i < moves.size(); i++ ) {
 				int[] eval = eval_move( b , moves.get(i), depth -1 , this_eval);
 				// if player won we can prune
 				if ( eval[ p.ordinal()] == WIN ) {
+					table.store( key, depth, eval, moves.get(i) );
 					return eval;
 				}
 				// Check if this move gives next player better pos
 				if ( alpha[p.ordinal()] < eval[p.ordinal()] ) {
 					alpha = eval;
+					best_move = moves.get(i);
 					if ( debug ) {
 						for ( int j = 0 ; j < this.depth - depth ; j ++ )
 							System.out.print(" ");
 						System.out.format("[%d,%d,%d,%d] ",
 									eval[0], eval[1], eval[2], eval[3]);
-						System.out.println( moves.get( i ) );
+						System.out.println( Move.unpack( moves.get( i ) ) );
 					}
 				}
 			}
+			// a search cut short by the deadline is not stored
+			if ( !control.should_stop() )
+				table.store( key, depth, alpha, best_move );
 			return alpha;
 		}
 
+		private int[] timed_eval_board(Board b){
+			if ( metrics == null )
+				return eval_board( b );
+			long start = System.nanoTime();
+			int[] eval = eval_board( b );
+			eval_nanos += System.nanoTime() - start;
+			return eval;
+		}
+
 		public int[] eval_board(Board b){
 
 			evaluated += 1;
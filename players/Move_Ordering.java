@@ -0,0 +1,146 @@
+package players;
+
+import game.Board;
+import game.Move;
+import game.Move_List;
+
+import java.util.Arrays;
+
+/**
+ * Orders the moves of a search position so the moves most likely to end the search of
+ * the position early come first:
+ *
+ *     1. the best move stored in the transposition table
+ *     2. the killer moves, recent moves that ended the search of another position at
+ *        the same depth
+ *     3. pawn moves, in generation order
+ *     4. walls that block a shortest path of an opponent
+ *     5. the other walls
+ *
+ * Within each group moves are sorted by their history score, which grows every time
+ * the move ends a search early. One instance is used by one thread.
+ */
+public class Move_Ordering {
+	private static final int KILLERS = 2;
+
+	private static final int TT_SCORE = 1 << 30;
+	private static final int KILLER_SCORE = 1 << 28;
+	private static final int PAWN_SCORE = 1 << 26;
+	private static final int BLOCKING_SCORE = 1 << 24;
+	private static final int MAX_HISTORY = BLOCKING_SCORE - 1;
+
+	private static Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, Player_ID.PLAYER_3, Player_ID.PLAYER_4};
+
+	// indexed by packed move
+	private int[] history = new int[1 << 12];
+	// killer moves by remaining depth, Transposition_Table.NO_MOVE when empty
+	private int[][] killers = new int[0][];
+	private int[] scores = new int[128];
+	// the shortest path cells of each player, see Board.get_shortest_path_cells
+	private long[][] path_cells = new long[4][2];
+
+	/**
+	 * Ages the history between turns so old cutoffs count for less.
+	 */
+	public void new_search(){
+		for(int i = 0; i < history.length; i++)
+			history[i] >>= 1;
+		for(int[] k : killers){
+			if(k != null)
+				k[0] = k[1] = Transposition_Table.NO_MOVE;
+		}
+	}
+
+	/**
+	 * Sorts the moves of a position, best first.
+	 *
+	 * @param b - the position
+	 * @param moves - moves of one player, sorted in place
+	 * @param depth - remaining depth, selects the killer moves
+	 * @param tt_move - packed best move of the transposition table or Transposition_Table.NO_MOVE
+	 */
+	public void order(Board b, Move_List moves, int depth, int tt_move){
+		int n = moves.size();
+		if(n < 2)
+			return;
+		if(scores.length < n)
+			scores = new int[n * 2];
+
+		int mover = -1;
+		boolean paths_found = false;
+		int[] killer = depth < killers.length ? killers[depth] : null;
+		for(int i = 0; i < n; i++){
+			int m = moves.get(i);
+			int score = history[m];
+			if(m == tt_move)
+				score += TT_SCORE;
+			else if(killer != null && (m == killer[0] || m == killer[1]))
+				score += KILLER_SCORE;
+			if(!Move.packed_is_wall(m)){
+				score += PAWN_SCORE;
+			}
+			else{
+				if(!paths_found){
+					mover = Move.packed_player(m).ordinal();
+					for(int p = 0; p < 4; p++){
+						if(p != mover)
+							b.get_shortest_path_cells(players_ids[p], path_cells[p]);
+					}
+					paths_found = true;
+				}
+				if(blocks_opponent(b, m, mover))
+					score += BLOCKING_SCORE;
+			}
+			scores[i] = score;
+		}
+
+		// insertion sort keeps generation order between equal scores
+		for(int i = 1; i < n; i++){
+			int m = moves.get(i);
+			int score = scores[i];
+			int j = i - 1;
+			while(j >= 0 && scores[j] < score){
+				scores[j + 1] = scores[j];
+				moves.set(j + 1, moves.get(j));
+				j--;
+			}
+			scores[j + 1] = score;
+			moves.set(j + 1, m);
+		}
+	}
+
+	/**
+	 * Records a move that ended the search of a position early.
+	 */
+	public void cutoff(int move, int depth){
+		history[move] = Math.min(MAX_HISTORY, history[move] + depth * depth);
+		if(depth >= killers.length){
+			int[][] grown = new int[depth + 1][];
+			System.arraycopy(killers, 0, grown, 0, killers.length);
+			killers = grown;
+		}
+		if(killers[depth] == null){
+			killers[depth] = new int[KILLERS];
+			Arrays.fill(killers[depth], Transposition_Table.NO_MOVE);
+		}
+		int[] killer = killers[depth];
+		if(killer[0] != move){
+			killer[1] = killer[0];
+			killer[0] = move;
+		}
+	}
+
+	/**
+	 * Does the wall block a step of an opponent's shortest path.
+	 */
+	private boolean blocks_opponent(Board b, int wall, int mover){
+		int row = Move.packed_row(wall);
+		int col = Move.packed_col(wall);
+		boolean horizontal = Move.packed_is_horizontal(wall);
+		for(int p = 0; p < 4; p++){
+			if(p != mover && b.blocks_shortest_path(players_ids[p], path_cells[p], row, col, horizontal))
+				return true;
+		}
+		return false;
+	}
+}
@@ -1,7 +1,9 @@
 package players;
 
 import game.Board;
+import game.Metrics;
 import game.Move;
+import game.Move_List;
 
 import java.util.Random;
 import java.util.Vector;
@@ -9,11 +11,15 @@ import java.util.Vector;
 /**
  * A player that looks one move ahead for the game of Quoridor.
  */
-public class OneAheadNew_Player implements Player {
+public class OneAheadNew_Player implements Player, Instrumented {
 	private Random rng;
 	private Player_ID self_id;
 	private static Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, Player_ID.PLAYER_3, Player_ID.PLAYER_4};
 	private boolean debug;
+	// moves and their distances, reused between turns
+	private Move_List moves = new Move_List();
+	private int[] distances;
+	private Metrics metrics;
 	
     /**
      * The player, whose turn it is next.
@@ -39,37 +45,60 @@ public class OneAheadNew_Player implements Player {
 		debug = debug_val;
 	}
 
+	/**
+	 * sets where search measurements are reported
+	 */
+	public void set_metrics(Metrics metrics){
+		this.metrics = metrics;
+	}
+
 	/**
 	 * returns a random move choice
 	 */
 	public Move make_move(Board b) {
-		Vector<Move> moves = b.get_possible_moves(self_id);
+		long start = System.nanoTime();
+		b.get_possible_moves(self_id, moves);
+		long generated = System.nanoTime();
+		// the distances after every move in one pass
+		distances = b.get_move_distances(moves, distances);
+		if ( metrics != null ) {
+			String name = getClass().getSimpleName();
+			metrics.record_search( name, moves.size(), 1, moves.size() );
+			metrics.record_operation( name, Metrics.Operation.POSSIBLE_MOVES, generated - start );
+			metrics.record_operation( name, Metrics.Operation.SHORTEST_PATH, System.nanoTime() - generated );
+			metrics.record_cache( name, b.get_path_cache_hits(), b.get_path_cache_misses() );
+		}
+		int[] walls = new int[4];
 		Vector<Move> good_moves = new Vector<Move>();
 		double best = LOSS;
 		for ( int i=0 ; i < moves.size(); i++) {
-			double[] eval = eval_move( b, moves.get(i));
+			for ( int j = 0; j < 4; j++)
+				walls[j] = b.get_wall_count( players_ids[j] );
+			if ( Move.packed_is_wall( moves.get(i) ) )
+				walls[ self_id.ordinal() ] -= 1;
+			double[] eval = eval_distances( distances, 4 * i, walls );
 			double myScore = eval[self_id.ordinal()];
 			if ( myScore > best) {
 				if (debug) {
 					System.out.format("Better---old: %.2f\n#[%.2f,%.2f,%.2f,%.2f]  ",
 						best, eval[0], eval[1], eval[2], eval[3]);
-                        System.out.println( moves.get( i ) );
+                        System.out.println( Move.unpack( moves.get( i ) ) );
 				}
 				best = myScore;
 				good_moves.removeAllElements();
-				good_moves.add(moves.get(i) );
+				good_moves.add( Move.unpack( moves.get(i) ) );
 			} else if( myScore == best ) {
 				if (debug ) {
 					System.out.format("#[%.2f,%.2f,%.2f,%.2f]  ",
 						eval[0], eval[1], eval[2], eval[3]);
-                        System.out.println( moves.get( i ) );
+                        System.out.println( Move.unpack( moves.get( i ) ) );
 				}
-				good_moves.add(moves.get(i));
+				good_moves.add( Move.unpack( moves.get(i) ) );
 			} else { // no a good move
 				if (debug ) {
 					System.out.format(" [%.2f,%.2f,%.2f,%.2f]  ",
 						eval[0], eval[1], eval[2], eval[3]);
-                        System.out.println( moves.get( i ) );
+                        System.out.println( Move.unpack( moves.get( i ) ) );
 				}
 			}
 		}
@@ -87,26 +116,37 @@ public class OneAheadNew_Player implements Player {
 	 * new move
 	 */
 	public double[] eval_move(Board board, Move m) {
-		// use this one so the orignal isn't modified
+		// apply the move and take it back so the orignal isn't modified
 		//System.out.println( m );
-		Board b = new Board( board );
-		b.apply_move( m );
+		board.apply_move( m );
+		double[] eval = eval_board( board );
+		board.undo_move();
 
-		return eval_board( b);
+		return eval;
 	}
 
 	public double[] eval_board(Board b){
+		int[] d = new int[4];
+		int[] walls = new int[4];
+		for ( int i = 0; i < 4; i++) {
+			d[i] = b.shortest_path(players_ids[i]);
+			walls[i] = b.get_wall_count(players_ids[i]);
+		}
+		return eval_distances( d, 0, walls );
+	}
+
+	/**
+	 * Evaluates a position from the players' shortest paths, d[offset] to d[offset + 3],
+	 * and walls left.
+	 */
+	public double[] eval_distances(int[] d, int offset, int[] walls){
 		// I know move was by this.self_id
 
-		// if game is over
-		if ( b.is_game_over() ) {
-			Player_ID p = b.compute_winner();
-			if (p == null) {
-				double[] eval = { TIE, TIE, TIE, TIE};
-				return  eval;
-			} else {
+		// if game is over, the first player at its goal wins like in compute_winner
+		for ( int i = 0; i < 4; i++) {
+			if ( d[offset + i] == 0 ) {
 				double[] eval = { LOSS, LOSS, LOSS, LOSS};
-				eval[p.ordinal()] = WIN;
+				eval[i] = WIN;
 				return eval;
 			}
 		}
@@ -116,7 +156,7 @@ public class OneAheadNew_Player implements Player {
 
 		for ( int i = 0; i < 4; i++) {
 			// negate shortest path so shorter paths score higher
-			shortp[i]= - b.shortest_path(players_ids[i]);// + b.get_wall_count(players_ids[i] ) * .2; 
+			shortp[i]= - d[offset + i];// + walls[i] * .2; 
 		}
 
 		if (debug ) {
@@ -195,7 +235,7 @@ public class OneAheadNew_Player implements Player {
 		double[] eval = { 0,0,0,0};
 		for ( int i = 0; i < 4; i++){
 			//eval[i] = in_first[i] * 100 - o_best[i] ;
-			eval[i] = vs_best[i] + b.get_wall_count( players_ids[i] ) * -.40;
+			eval[i] = vs_best[i] + walls[i] * -.40;
 		}
 		return eval;
 	}
@@ -0,0 +1,162 @@
+package players;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Book moves for the opening positions, keyed by Board.get_canonical_key() so the
+ * positions that are turns of each other share their entries. The moves are those of
+ * the canonical form, turned back with Board.unrotate_move. A turned back move is not
+ * always legal, the rules of diagonal steps are not the same under every turn, so it
+ * is checked before it is played. Built by driver.BookGenerator from self-play games.
+ *
+ * The file is a header of magic and entry count followed by the entries sorted by key,
+ * 12 bytes each: the key, the move packed with Move.pack and its weight. A position
+ * has one entry per book move. The file is memory mapped and searched in place, a book
+ * is opened once per file and shared by every player, lookups are thread safe.
+ */
+public class Opening_Book {
+	public static final String DEFAULT_FILE = "opening.book";
+
+	private static final int MAGIC = 0x514F4232; // "QOB2"
+	private static final int HEADER_BYTES = 8;
+	private static final int ENTRY_BYTES = 12;
+
+	// books already opened by file name, a missing file maps to null
+	private static final HashMap<String, Opening_Book> opened = new HashMap<String, Opening_Book>();
+
+	private final MappedByteBuffer entries;
+	private final int size;
+
+	private Opening_Book(MappedByteBuffer entries, int size){
+		this.entries = entries;
+		this.size = size;
+	}
+
+	/**
+	 * Opens a book file.
+	 *
+	 * @param file_name
+	 * @return the book, null if the file does not exist or is not a book
+	 */
+	public static Opening_Book load(String file_name){
+		synchronized(opened){
+			if(opened.containsKey(file_name))
+				return opened.get(file_name);
+			Opening_Book book = null;
+			File file = new File(file_name);
+			if(file.isFile()){
+				try{
+					RandomAccessFile raf = new RandomAccessFile(file, "r");
+					try{
+						MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+						if(buffer.capacity() >= HEADER_BYTES && buffer.getInt(0) == MAGIC){
+							int size = buffer.getInt(4);
+							if(size >= 0 && (long)HEADER_BYTES + (long)size * ENTRY_BYTES <= buffer.capacity())
+								book = new Opening_Book(buffer, size);
+						}
+					}
+					finally{
+						// the mapping stays valid after the file is closed
+						raf.close();
+					}
+				}
+				catch(IOException e){
+					System.err.println("Could not read opening book " + file_name + ": " + e.getMessage());
+				}
+			}
+			opened.put(file_name, book);
+			return book;
+		}
+	}
+
+	/**
+	 * Writes a book file.
+	 *
+	 * @param file_name
+	 * @param keys - position keys, sorted
+	 * @param moves - packed book move of each entry
+	 * @param weights - weight of each entry, how strongly the move is preferred
+	 * @param size - number of entries
+	 */
+	public static void write(String file_name, long[] keys, int[] moves, int[] weights, int size) throws IOException{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file_name)));
+		try{
+			out.writeInt(MAGIC);
+			out.writeInt(size);
+			for(int i = 0; i < size; i++){
+				out.writeLong(keys[i]);
+				out.writeInt(moves[i] << 16 | Math.min(weights[i], 0xFFFF));
+			}
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Number of entries.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * A book move of the position, drawn by weight.
+	 *
+	 * @param key - the position's canonical key
+	 * @param rng - draws between the moves, null to take the heaviest
+	 * @return the packed move of the canonical form, Transposition_Table.NO_MOVE if the
+	 *         position is not in the book
+	 */
+	public int get_move(long key, Random rng){
+		// first entry of the key
+		int low = 0, high = size;
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			if(key_at(mid) < key)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		int total = 0;
+		int best = Transposition_Table.NO_MOVE;
+		int best_weight = -1;
+		for(int i = low; i < size && key_at(i) == key; i++){
+			int weight = weight_at(i);
+			total += weight;
+			if(weight > best_weight){
+				best_weight = weight;
+				best = move_at(i);
+			}
+		}
+		if(rng == null || total == 0)
+			return best;
+		int pick = rng.nextInt(total);
+		for(int i = low; ; i++){
+			pick -= weight_at(i);
+			if(pick < 0)
+				return move_at(i);
+		}
+	}
+
+	private long key_at(int i){
+		return entries.getLong(HEADER_BYTES + i * ENTRY_BYTES);
+	}
+
+	private int move_at(int i){
+		return entries.getInt(HEADER_BYTES + i * ENTRY_BYTES + 8) >>> 16;
+	}
+
+	private int weight_at(int i){
+		return entries.getInt(HEADER_BYTES + i * ENTRY_BYTES + 8) & 0xFFFF;
+	}
+}
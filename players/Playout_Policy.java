@@ -0,0 +1,127 @@
+package players;
+
+import game.Board;
+import game.Move;
+import game.Move_List;
+
+import java.util.Random;
+
+/**
+ * The playouts of the Monte Carlo players, a fast policy rather than a strong one:
+ * pawns step down their goal distance map and now and then a player puts a wall on the
+ * shortest path of the opponent in the lead. A playout ends when a player arrives,
+ * after PLAYOUT_PLIES moves or when nobody has walls left, the race from there decides
+ * the winner, see Endgame_Solver.race_winner. One instance is used by one thread.
+ */
+public class Playout_Policy {
+	// a player puts a wall on the leader's path about once every WALL_ODDS moves
+	private static final int WALL_ODDS = 4;
+	// wall positions tried before the player steps instead
+	private static final int WALL_TRIES = 12;
+	// moves before the race decides, when walls are still left
+	private static final int PLAYOUT_PLIES = 32;
+
+	private static Player_ID[] players_ids = new Player_ID[]{Player_ID.PLAYER_1, Player_ID.PLAYER_2, Player_ID.PLAYER_3, Player_ID.PLAYER_4};
+
+	private final Move_List moves = new Move_List();
+	private final long[] cells = new long[2];
+	private final Random random = new Random();
+	// the board of the current playout
+	private Board b;
+
+	public void set_seed(long seed){
+		random.setSeed( seed );
+	}
+
+	/**
+	 * Plays the game out. The moves are applied to the board, which is left at the end
+	 * of the playout.
+	 *
+	 * @param board
+	 * @param p - the player to move
+	 * @return the winner's index, -1 for a tie
+	 */
+	public int play(Board board, int p){
+		b = board;
+		int skipped = 0;
+		for ( int ply = 0; ply < PLAYOUT_PLIES && skipped < 4; ply++, p = (p + 1) % 4 ) {
+			if ( b.is_game_over() )
+				return winner_index( b.compute_winner() );
+			if ( Endgame_Solver.applies( b ) )
+				break;
+			if ( b.get_wall_count( players_ids[p] ) > 0 && random.nextInt( WALL_ODDS ) == 0 && place_wall( p ) ) {
+				skipped = 0;
+				continue;
+			}
+			if ( step( p ) || ( b.get_wall_count( players_ids[p] ) > 0 && place_wall( p ) ) )
+				skipped = 0;
+			else
+				skipped++;
+		}
+		if ( b.is_game_over() || skipped == 4 )
+			return winner_index( b.compute_winner() );
+		return Endgame_Solver.race_winner( b, players_ids[p] ).ordinal();
+	}
+
+	/**
+	 * Moves the player's pawn to the neighbouring cell closest to its goal, ties
+	 * broken at random.
+	 */
+	private boolean step(int p){
+		b.get_pawn_moves( players_ids[p], moves );
+		int best = -1;
+		int best_distance = Integer.MAX_VALUE;
+		int ties = 0;
+		for ( int i = 0; i < moves.size(); i++ ) {
+			int m = moves.get(i);
+			int d = b.get_goal_distance( players_ids[p], Move.packed_row( m ), Move.packed_col( m ) );
+			if ( d < best_distance ) {
+				best_distance = d;
+				best = m;
+				ties = 1;
+			} else if ( d == best_distance && random.nextInt( ++ties ) == 0 ) {
+				best = m;
+			}
+		}
+		return best >= 0 && b.apply_move( best );
+	}
+
+	/**
+	 * Puts one of the player's walls on the shortest path of the opponent in the
+	 * lead of the race.
+	 */
+	private boolean place_wall(int p){
+		int leader = -1;
+		int first = Integer.MAX_VALUE;
+		for ( int i = 0; i < 4; i++ ) {
+			if ( i == p )
+				continue;
+			// plies until player i arrives, counted from p's move
+			int d = b.get_goal_distance( players_ids[i], b.get_player_location( players_ids[i] ).row(),
+					b.get_player_location( players_ids[i] ).col() );
+			int arrival = (i - p + 4) % 4 + 4 * (d - 1);
+			if ( arrival < first ) {
+				first = arrival;
+				leader = i;
+			}
+		}
+		b.get_shortest_path_cells( players_ids[leader], cells );
+		for ( int i = 0; i < WALL_TRIES; i++ ) {
+			boolean horizontal = random.nextBoolean();
+			int row = 1 + random.nextInt( 8 );
+			int col = 1 + random.nextInt( 8 );
+			if ( horizontal )
+				col--;
+			else
+				row--;
+			if ( b.blocks_shortest_path( players_ids[leader], cells, row, col, horizontal )
+					&& b.apply_move( Move.pack( Move.MOVE_TYPE.PLACE_WALL, players_ids[p], row, col, horizontal ) ) )
+				return true;
+		}
+		return false;
+	}
+
+	private static int winner_index(Player_ID winner){
+		return winner == null ? -1 : winner.ordinal();
+	}
+}
@@ -0,0 +1,391 @@
+package players;
+
+import game.Board;
+import game.Distance_Cache;
+import game.Metrics;
+import game.Move;
+import game.Move_List;
+import game.Search_Control;
+
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Monte Carlo tree search player, as MCTS_Player, for many cores. The threads share
+ * one tree without locks:
+ *
+ *     - the nodes live in an arena of primitive arrays allocated once, a node is an
+ *       index and the children of a node are consecutive indices
+ *     - a node's visits and wins are packed in one long and updated with atomic adds,
+ *       the visit is added on the way down so it is a virtual loss until the playout's
+ *       win is added
+ *     - a node is expanded by the thread that claims it with a compare and set, the
+ *       others play out from it meanwhile instead of waiting
+ *
+ * The arena is reset every turn, nothing is kept between turns. When it is full the
+ * leaves are no longer expanded and the search goes on with playouts from them. The
+ * thread count defaults to the shared_tree.threads system property, all processors if
+ * it is not set, the arena size to tree.nodes.
+ */
+public class Shared_Tree_Player implements Player, Instrumented, Time_Managed {
+	// exploration constant of UCT, rewards are 0 or 1
+	private static final double EXPLORATION = 0.7;
+	// a node is expanded once it has this many visits
+	private static final int EXPAND_VISITS = 2;
+
+	// stats are visits << 32 | wins in quarters, so a tie's share is whole
+	private static final long VISIT = 1L << 32;
+	private static final int WIN = 4;
+	private static final int TIE = 1;
+	// children are first child << 16 | count, 0 while the node is not expanded
+	private static final long EXPANDING = -1;
+	// a node left unexpanded for good because the arena is full
+	private static final long LEAF = -2;
+	private static final int ROOT = 0;
+
+	private Random rng;
+	private Player_ID self_id;
+	private boolean debug = false;
+	private Metrics metrics;
+	// turn deadlines, replaced by the game's when it has one
+	private Search_Control control = new Search_Control(1995);
+	// plays the positions where nobody has walls left and the result is proven
+	private Endgame_Solver endgame = new Endgame_Solver();
+	// distance maps of the wall configurations played out, shared by the search players
+	private Distance_Cache distance_cache = Distance_Cache.shared();
+
+	private int threads;
+	// runs the searches of every thread but the calling one, created on the first move
+	private ThreadPoolExecutor pool;
+	private Searcher[] searchers;
+
+	// the arena, allocated on the first move
+	private final int capacity;
+	private int[] moves;
+	private AtomicLongArray children;
+	private AtomicLongArray stats;
+	private final AtomicInteger allocated = new AtomicInteger();
+
+	// the position searched, the root's children are the moves of self_id
+	private final Board root_board = new Board();
+
+	public Shared_Tree_Player(){
+		this(Integer.getInteger("shared_tree.threads", Runtime.getRuntime().availableProcessors()),
+				Integer.getInteger("tree.nodes", 1 << 21));
+	}
+
+	/**
+	 * @param threads - threads searching the tree
+	 * @param capacity - nodes in the arena
+	 */
+	public Shared_Tree_Player(int threads, int capacity){
+		rng = new Random();
+		this.capacity = Math.max(capacity, 1 << 10);
+		set_threads(threads);
+	}
+
+	/**
+	 * Sets the number of threads searching the tree.
+	 */
+	public void set_threads(int threads){
+		this.threads = Math.max(threads, 1);
+		if ( pool != null ) {
+			pool.shutdown();
+			pool = null;
+		}
+		searchers = new Searcher[this.threads];
+		for ( int i = 0; i < this.threads; i++ )
+			searchers[i] = new Searcher();
+	}
+
+	public void set_search_control(Search_Control control){
+		control.adopt_move_budget( self_id, this.control );
+		this.control = control;
+	}
+
+	/**
+	 * Sets the distance map cache of the search boards, null to repair the maps on every
+	 * wall. Defaults to Distance_Cache.shared().
+	 */
+	public void set_distance_cache(Distance_Cache cache){
+		distance_cache = cache;
+	}
+
+	/**
+	 * sets where search measurements are reported
+	 */
+	public void set_metrics(Metrics metrics){
+		this.metrics = metrics;
+	}
+
+	public void set_debug(boolean debug){
+		this.debug = debug;
+	}
+
+	public void set_id(Player_ID id){
+		self_id = id;
+	}
+
+	public void set_seed(long seed){
+		rng = new Random(seed);
+	}
+
+	public void notify_of_move(Player_ID player_that_made_move, Move move_made, Board resulting_board){
+	}
+
+	public Move make_move(Board b){
+		control.start_turn( self_id );
+		if ( Endgame_Solver.applies( b ) ) {
+			int m = endgame.solve( b, self_id );
+			// an unproven result is only the race at the solver's limit, search instead
+			if ( m != Transposition_Table.NO_MOVE && endgame.get_exact() ) {
+				control.end_turn( self_id );
+				return Move.unpack( m );
+			}
+		}
+
+		if ( moves == null ) {
+			moves = new int[capacity];
+			children = new AtomicLongArray( capacity );
+			stats = new AtomicLongArray( capacity );
+		}
+		root_board.copy_from( b );
+		allocated.set( 1 );
+		moves[ROOT] = Transposition_Table.NO_MOVE;
+		stats.set( ROOT, 0 );
+		children.set( ROOT, 0 );
+		searchers[0].expand( ROOT, (self_id.ordinal() + 3) % 4, root_board );
+		long root_children = children.get( ROOT );
+		int first = (int)(root_children >>> 16);
+		int count = (int)(root_children & 0xFFFF);
+
+		long iterations = 0;
+		int max_depth = 0;
+		long path_hits = 0, path_misses = 0;
+		if ( count > 1 ) {
+			for ( int i = 0; i < threads; i++ )
+				searchers[i].start( rng.nextLong() );
+			run_searchers();
+			for ( int i = 0; i < threads; i++ ) {
+				iterations += searchers[i].iterations;
+				max_depth = Math.max( max_depth, searchers[i].max_depth );
+				path_hits += searchers[i].path_hits;
+				path_misses += searchers[i].path_misses;
+			}
+		}
+
+		// the most played move is the most trusted one
+		int best = first;
+		for ( int i = first; i < first + count; i++ ) {
+			if ( stats.get( i ) >>> 32 > stats.get( best ) >>> 32 )
+				best = i;
+		}
+		if ( debug ) {
+			System.out.println( "*************************************" );
+			for ( int i = first; i < first + count; i++ ) {
+				long s = stats.get( i );
+				if ( s >>> 32 > 0 )
+					System.out.format( "%6d %.3f %s\n", s >>> 32, (int) s / (double) WIN / (s >>> 32), Move.unpack( moves[i] ) );
+			}
+			System.out.format( "Iterations: %d on %d threads, %d nodes, depth %d\n",
+					iterations, threads, Math.min( allocated.get(), capacity ), max_depth );
+			System.out.println( "=====================================" );
+		}
+		if ( metrics != null ) {
+			metrics.record_search( getClass().getSimpleName(), iterations, max_depth, count );
+			metrics.record_cache( getClass().getSimpleName(), path_hits + root_board.get_path_cache_hits(),
+					path_misses + root_board.get_path_cache_misses() );
+		}
+		control.end_turn( self_id );
+		return Move.unpack( moves[best] );
+	}
+
+	/**
+	 * Runs the searchers until the turn's deadline, the first on the calling thread and
+	 * the rest on the pool. They poll the control after every playout so all of them
+	 * have returned when this does.
+	 */
+	private void run_searchers(){
+		if ( threads > 1 && pool == null ) {
+			pool = new ThreadPoolExecutor( threads - 1, threads - 1, 10, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread( r, "Shared tree search" );
+					t.setDaemon( true );
+					return t;
+				}
+			});
+			// players that are done don't keep threads
+			pool.allowCoreThreadTimeOut( true );
+		}
+		Vector<Future<?>> futures = new Vector<Future<?>>();
+		for ( int i = 1; i < threads; i++ )
+			futures.add( pool.submit( searchers[i] ) );
+		searchers[0].run();
+		boolean interrupted = false;
+		for ( Future<?> f : futures ) {
+			while ( true ) {
+				try {
+					f.get();
+					break;
+				} catch ( InterruptedException e ) {
+					// still wait for the searcher, it stops after its playout
+					control.stop();
+					interrupted = true;
+				} catch ( ExecutionException e ) {
+					throw new RuntimeException( e.getCause() );
+				}
+			}
+		}
+		if ( interrupted )
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * The search state of one thread, its own board and move lists.
+	 */
+	class Searcher implements Runnable {
+		private final Board b = new Board();
+		private final Move_List move_list = new Move_List();
+		private final Playout_Policy policy = new Playout_Policy();
+		private int[] path = new int[64];
+		long iterations;
+		int max_depth;
+		// goal path cache counters of the board's copies this turn
+		long path_hits, path_misses;
+
+		void start(long seed){
+			policy.set_seed( seed );
+			b.set_distance_cache( distance_cache );
+			iterations = 0;
+			max_depth = 0;
+			path_hits = path_misses = 0;
+			// clears the board's counters of the last turn
+			b.copy_from( root_board );
+		}
+
+		public void run(){
+			while ( !control.should_stop() ) {
+				iterate();
+				iterations++;
+			}
+			count_path_cache();
+		}
+
+		// adds the board's counters before they are cleared by a copy
+		private void count_path_cache(){
+			path_hits += b.get_path_cache_hits();
+			path_misses += b.get_path_cache_misses();
+		}
+
+		/**
+		 * One selection, expansion, playout and update.
+		 */
+		private void iterate(){
+			count_path_cache();
+			b.copy_from( root_board );
+			int node = ROOT;
+			int mover = (self_id.ordinal() + 3) % 4;
+			int depth = 0;
+			stats.addAndGet( ROOT, VISIT );
+			while ( !b.is_game_over() ) {
+				long c = children.get( node );
+				if ( c == 0 ) {
+					if ( stats.get( node ) >>> 32 < EXPAND_VISITS || !children.compareAndSet( node, 0, EXPANDING ) )
+						break;
+					c = expand( node, mover, b );
+				}
+				int count = (int)(c & 0xFFFF);
+				if ( c == EXPANDING || c == LEAF || count == 0 )
+					break;
+				int child = select( node, (int)(c >>> 16), count );
+				b.apply_move( moves[child] );
+				if ( ++depth == path.length ) {
+					int[] longer = new int[path.length * 2];
+					System.arraycopy( path, 0, longer, 0, path.length );
+					path = longer;
+				}
+				path[depth] = child;
+				node = child;
+				mover = Move.packed_player( moves[child] ).ordinal();
+			}
+			max_depth = Math.max( max_depth, depth );
+
+			int winner = policy.play( b, (mover + 1) % 4 );
+			for ( int i = depth; i > 0; i-- ) {
+				int n = path[i];
+				int n_mover = Move.packed_player( moves[n] ).ordinal();
+				if ( winner == n_mover )
+					stats.addAndGet( n, WIN );
+				else if ( winner < 0 )
+					stats.addAndGet( n, TIE );
+			}
+		}
+
+		/**
+		 * The child with the best upper confidence bound, its visit is added before it
+		 * is searched. An untried child is taken by the thread whose compare and set
+		 * adds its first visit.
+		 */
+		private int select(int node, int first, int count){
+			double log_total = Math.log( (stats.get( node ) >>> 32) + 1 );
+			int best = first;
+			double best_score = Double.NEGATIVE_INFINITY;
+			for ( int i = first; i < first + count; i++ ) {
+				long s = stats.get( i );
+				long n = s >>> 32;
+				if ( n == 0 ) {
+					if ( stats.compareAndSet( i, s, s + VISIT ) )
+						return i;
+					s = stats.get( i );
+					n = s >>> 32;
+				}
+				double score = (int) s / (double) WIN / n + EXPLORATION * Math.sqrt( log_total / n );
+				if ( score > best_score ) {
+					best_score = score;
+					best = i;
+				}
+			}
+			stats.addAndGet( best, VISIT );
+			return best;
+		}
+
+		/**
+		 * Allocates and publishes the children of a node claimed by this thread. When the
+		 * arena is full the node becomes a LEAF, it is played out from and never claimed
+		 * again.
+		 *
+		 * @return the node's children, LEAF if it was not expanded
+		 */
+		long expand(int node, int mover, Board board){
+			if ( allocated.get() >= capacity ) {
+				children.set( node, LEAF );
+				return LEAF;
+			}
+			MCTS_Player.tree_moves( board, mover, move_list );
+			int count = move_list.size();
+			int first = allocated.getAndAdd( count );
+			if ( first + count > capacity ) {
+				children.set( node, LEAF );
+				return LEAF;
+			}
+			for ( int i = 0; i < count; i++ ) {
+				moves[first + i] = move_list.get(i);
+				stats.set( first + i, 0 );
+				children.set( first + i, 0 );
+			}
+			// the children are visible to a thread that reads the node's children
+			long c = (long) first << 16 | count;
+			children.set( node, c );
+			return c;
+		}
+	}
+}
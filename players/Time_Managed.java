@@ -0,0 +1,13 @@
+package players;
+
+import game.Search_Control;
+
+/**
+ * A player whose searches follow the game's time budgets, see game.Search_Control.
+ */
+public interface Time_Managed {
+	/**
+	 * Sets the budgets of the player's turns.
+	 */
+	public void set_search_control(Search_Control control);
+}
@@ -0,0 +1,170 @@
+package players;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size transposition table for the max-n searches. Positions are keyed by
+ * Board.get_zobrist_key() and each entry stores the search depth, the four player
+ * score vector and the best move found.
+ *
+ * The table is lock free. Every entry is three longs: the key xor'd with the two data
+ * words, the packed scores and a word holding depth, age and best move. A reader that
+ * sees a half written entry gets a key mismatch and treats it as a miss, so searches
+ * running on other threads can share the table without synchronization.
+ *
+ * Buckets hold two entries. The first is depth preferred, it is only replaced by a
+ * deeper search or an entry from an older search. The second is always replaced.
+ */
+public class Transposition_Table {
+	public static final int NO_MOVE = -1;
+
+	private static final int LONGS_PER_ENTRY = 3;
+	private static final int ENTRIES_PER_BUCKET = 2;
+
+	private final long[] table;
+	private final int bucket_mask;
+	private int age;
+
+	// statistics, counted by every searching thread
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder collisions = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+
+	/**
+	 * @param buckets - number of buckets, rounded down to a power of two
+	 */
+	public Transposition_Table(int buckets){
+		int size = Integer.highestOneBit(Math.max(buckets, 1));
+		table = new long[size * ENTRIES_PER_BUCKET * LONGS_PER_ENTRY];
+		bucket_mask = size - 1;
+		age = 1;
+	}
+
+	public Transposition_Table(){
+		this(1 << 16);
+	}
+
+	/**
+	 * Marks the start of a new search, entries from older searches are replaced first.
+	 * Entries are kept since a position's value does not depend on the root.
+	 */
+	public void new_search(){
+		age = (age + 1) & 0xFF;
+		if(age == 0)
+			age = 1;
+	}
+
+	/**
+	 * Resets the statistics counters.
+	 */
+	public void clear_stats(){
+		hits.reset();
+		misses.reset();
+		collisions.reset();
+		stores.reset();
+	}
+
+	public long get_hits(){
+		return hits.sum();
+	}
+
+	public long get_misses(){
+		return misses.sum();
+	}
+
+	public long get_collisions(){
+		return collisions.sum();
+	}
+
+	public long get_stores(){
+		return stores.sum();
+	}
+
+	/**
+	 * Look up a position. If it is stored the scores are copied into the provided array
+	 * and the entry's info word is returned, use get_depth and get_best_move on it.
+	 *
+	 * @param key - position key
+	 * @param depth - the depth the caller needs, only used for the hit/miss counters
+	 * @param scores - receives the four scores
+	 * @return the entry info, 0 if the position is not stored
+	 */
+	public long probe(long key, int depth, int[] scores){
+		int base = bucket(key);
+		boolean occupied = false;
+		for(int i = 0; i < ENTRIES_PER_BUCKET; i++){
+			int e = base + i * LONGS_PER_ENTRY;
+			long packed = table[e + 1];
+			long info = table[e + 2];
+			if((table[e] ^ packed ^ info) == key && info != 0){
+				unpack_scores(packed, scores);
+				if(get_depth(info) >= depth)
+					hits.increment();
+				else
+					misses.increment();
+				return info;
+			}
+			occupied |= info != 0;
+		}
+		misses.increment();
+		if(occupied)
+			collisions.increment();
+		return 0;
+	}
+
+	/**
+	 * Store a search result.
+	 *
+	 * @param key - position key
+	 * @param depth - depth that was searched below the position
+	 * @param scores - the four scores
+	 * @param best_move - best move packed with Move.pack, or NO_MOVE
+	 */
+	public void store(long key, int depth, int[] scores, int best_move){
+		int base = bucket(key);
+		long old_info = table[base + 2];
+		boolean same_key = (table[base] ^ table[base + 1] ^ old_info) == key;
+		int e = base;
+		if(!same_key && old_info != 0 && get_age(old_info) == age && get_depth(old_info) > depth){
+			// keep the deeper entry, use the always replace slot
+			e = base + LONGS_PER_ENTRY;
+		}
+		long packed = pack_scores(scores);
+		long info = (depth & 0xFFL) | (long)age << 8 | ((best_move + 1L) & 0xFFFFFFFFL) << 16;
+		table[e] = key ^ packed ^ info;
+		table[e + 1] = packed;
+		table[e + 2] = info;
+		stores.increment();
+	}
+
+	public static int get_depth(long info){
+		return (int)(info & 0xFF);
+	}
+
+	private static int get_age(long info){
+		return (int)((info >>> 8) & 0xFF);
+	}
+
+	public static int get_best_move(long info){
+		return (int)((info >>> 16) & 0xFFFFFFFFL) - 1;
+	}
+
+	private int bucket(long key){
+		int h = (int)(key ^ (key >>> 32));
+		return (h & bucket_mask) * ENTRIES_PER_BUCKET * LONGS_PER_ENTRY;
+	}
+
+	// scores are within +/- WIN so each fits in 16 bits
+	private static long pack_scores(int[] scores){
+		long packed = 0;
+		for(int i = 0; i < 4; i++)
+			packed |= (scores[i] & 0xFFFFL) << (16 * i);
+		return packed;
+	}
+
+	private static void unpack_scores(long packed, int[] scores){
+		for(int i = 0; i < 4; i++)
+			scores[i] = (short)(packed >>> (16 * i));
+	}
+}